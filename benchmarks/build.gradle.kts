@@ -0,0 +1,37 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+// Benchmarks are run with ./gradlew :benchmarks:jmh
+// The packet benchmarks also need the server classes, add them with -PserverJar=<path to a Paper 1.21 server jar>
+
+dependencies {
+    jmh(project(":common"))
+    jmh(project(":v1_21_R1"))
+    jmh("org.spigotmc:spigot-api:1.19.4-R0.1-SNAPSHOT")
+    jmh("com.comphenix.protocol:ProtocolLib:5.1.0")
+    jmh("it.unimi.dsi:fastutil:8.5.13")
+    jmh("net.kyori:adventure-api:4.17.0")
+    jmh("net.kyori:adventure-text-minimessage:4.17.0")
+    jmh("net.kyori:adventure-text-serializer-legacy:4.17.0")
+    jmh("org.apache.commons:commons-lang3:3.14.0")
+    findProperty("serverJar")?.let { jmh(files(it)) }
+}
+
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    findProperty("benchmarks")?.let { includes.add(it.toString()) }
+}
+
+tasks {
+    compileJava {
+        options.encoding = Charsets.UTF_8.name()
+    }
+    // v1_21_R1 is built for Java 21, so the benchmarks have to be too
+    java {
+        toolchain.languageVersion.set(JavaLanguageVersion.of(21));
+    }
+}
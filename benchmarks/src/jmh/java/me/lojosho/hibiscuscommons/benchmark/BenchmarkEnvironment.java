@@ -0,0 +1,25 @@
+package me.lojosho.hibiscuscommons.benchmark;
+
+import com.comphenix.protocol.utility.MinecraftReflection;
+import com.comphenix.protocol.utility.MinecraftVersion;
+
+/**
+ * Sets up just enough of the game for ProtocolLib to create packets outside of a running server
+ */
+public class BenchmarkEnvironment {
+
+    private static boolean setup = false;
+
+    public static synchronized void setup() {
+        if (setup) return;
+        setup = true;
+        try {
+            Class.forName("net.minecraft.SharedConstants").getMethod("tryDetectVersion").invoke(null);
+            Class.forName("net.minecraft.server.Bootstrap").getMethod("bootStrap").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The server classes are missing, run the benchmarks with -PserverJar=<path to a Paper server jar>", e);
+        }
+        MinecraftReflection.setMinecraftPackage("net.minecraft", "org.bukkit.craftbukkit");
+        MinecraftVersion.setCurrentVersion(MinecraftVersion.LATEST);
+    }
+}
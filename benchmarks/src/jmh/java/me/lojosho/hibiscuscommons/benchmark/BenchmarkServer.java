@@ -0,0 +1,41 @@
+package me.lojosho.hibiscuscommons.benchmark;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.PluginManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Installs a stand-in Bukkit server, enough for items and metas to be created without a running server
+ */
+public class BenchmarkServer {
+
+    private static boolean setup = false;
+
+    public static synchronized void setup() {
+        if (setup || Bukkit.getServer() != null) return;
+        setup = true;
+
+        ItemMeta meta = Stubs.create(ItemMeta.class);
+        Map<String, Object> factoryAnswers = new HashMap<>();
+        factoryAnswers.put("getItemMeta", meta);
+        factoryAnswers.put("asMetaFor", meta);
+        factoryAnswers.put("isApplicable", true);
+        ItemFactory itemFactory = Stubs.create(ItemFactory.class, factoryAnswers);
+
+        Map<String, Object> serverAnswers = new HashMap<>();
+        serverAnswers.put("getLogger", Logger.getLogger("Benchmark"));
+        serverAnswers.put("getName", "Benchmark");
+        serverAnswers.put("getVersion", "benchmark");
+        serverAnswers.put("getBukkitVersion", "1.19.4-R0.1-SNAPSHOT");
+        serverAnswers.put("getItemFactory", itemFactory);
+        serverAnswers.put("getPluginManager", Stubs.create(PluginManager.class));
+        serverAnswers.put("isPrimaryThread", true);
+        Bukkit.setServer(Stubs.create(Server.class, serverAnswers));
+    }
+}
@@ -0,0 +1,44 @@
+package me.lojosho.hibiscuscommons.benchmark;
+
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces ProtocolLib's manager with one that only counts the packets it's asked to send
+ */
+public class FakeProtocolManager {
+
+    private static final LongAdder SENT = new LongAdder();
+    private static boolean installed = false;
+
+    public static synchronized void install() {
+        if (installed) return;
+        installed = true;
+        ProtocolManager manager = Stubs.create(ProtocolManager.class, Map.of());
+        ProtocolManager counting = (ProtocolManager) java.lang.reflect.Proxy.newProxyInstance(
+                FakeProtocolManager.class.getClassLoader(),
+                new Class<?>[] {ProtocolManager.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendServerPacket")) {
+                        SENT.increment();
+                        return null;
+                    }
+                    return method.invoke(manager, args);
+                });
+        try {
+            Field field = ProtocolLibrary.class.getDeclaredField("protocolManager");
+            field.setAccessible(true);
+            field.set(null, counting);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to replace ProtocolLib's manager", e);
+        }
+    }
+
+    public static long getSent() {
+        return SENT.sum();
+    }
+}
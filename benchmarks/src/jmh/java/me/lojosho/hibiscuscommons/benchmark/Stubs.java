@@ -0,0 +1,38 @@
+package me.lojosho.hibiscuscommons.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Creates stand-ins for server and plugin interfaces. Every method returns the answer given for its name, the stub itself
+ * if it returns the stubbed type, or the default value of its return type.
+ */
+public class Stubs {
+
+    @SuppressWarnings("unchecked")
+    public static <T> T create(Class<T> type, Map<String, Object> answers) {
+        Object[] self = new Object[1];
+        self[0] = Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (answers.containsKey(name)) return answers.get(name);
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+            if (name.equals("toString")) return type.getSimpleName() + "Stub";
+            Class<?> returnType = method.getReturnType();
+            if (returnType.isInstance(self[0])) return self[0];
+            if (!returnType.isPrimitive()) return null;
+            if (returnType == boolean.class) return false;
+            if (returnType == void.class) return null;
+            if (returnType == char.class) return '\0';
+            if (returnType == float.class) return 0F;
+            if (returnType == double.class) return 0D;
+            if (returnType == long.class) return 0L;
+            return returnType == byte.class ? (byte) 0 : returnType == short.class ? (short) 0 : 0;
+        });
+        return (T) self[0];
+    }
+
+    public static <T> T create(Class<T> type) {
+        return create(type, Map.of());
+    }
+}
@@ -0,0 +1,50 @@
+package me.lojosho.hibiscuscommons.config.serializer;
+
+import me.lojosho.hibiscuscommons.benchmark.BenchmarkServer;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.configurate.BasicConfigurationNode;
+import org.spongepowered.configurate.ConfigurationNode;
+import org.spongepowered.configurate.serialize.SerializationException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deserializing item configs, from a bare material to a named, lored and colored item
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemSerializerBenchmark {
+
+    private ConfigurationNode material;
+    private ConfigurationNode decorated;
+
+    @Setup
+    public void setup() throws SerializationException {
+        BenchmarkServer.setup();
+
+        material = BasicConfigurationNode.root();
+        material.node("material").set("DIAMOND_SWORD");
+
+        decorated = BasicConfigurationNode.root();
+        decorated.node("material").set("LEATHER_CHESTPLATE");
+        decorated.node("amount").set(1);
+        decorated.node("name").set("<gradient:#ff0000:#0000ff>Fancy Chestplate</gradient>");
+        decorated.node("lore").set(List.of("<gray>A very fancy", "<yellow>chestplate"));
+        decorated.node("model-data").set(1001);
+        decorated.node("item-flags").set(List.of("HIDE_ATTRIBUTES", "HIDE_DYE"));
+        decorated.node("color").set("#FF00AA");
+    }
+
+    @Benchmark
+    public ItemStack deserializeMaterial() throws SerializationException {
+        return ItemSerializer.INSTANCE.deserialize(ItemStack.class, material);
+    }
+
+    @Benchmark
+    public ItemStack deserializeDecorated() throws SerializationException {
+        return ItemSerializer.INSTANCE.deserialize(ItemStack.class, decorated);
+    }
+}
@@ -0,0 +1,88 @@
+package me.lojosho.hibiscuscommons.hooks;
+
+import me.lojosho.hibiscuscommons.benchmark.BenchmarkServer;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving items through {@link Hooks}, with a stub hook standing in for an item plugin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HooksBenchmark {
+
+    private ItemStack hookedItem;
+    private ItemStack vanillaItem;
+    private ItemReference hookedReference;
+    private ItemReference vanillaReference;
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.setup();
+        StubItemHook hook = new StubItemHook();
+        hook.setActive(true);
+        hookedItem = hook.item;
+        vanillaItem = new ItemStack(Material.DIAMOND_SWORD);
+        hookedReference = ItemReference.parse("stubitems:big_sword");
+        vanillaReference = ItemReference.parse("DIAMOND_SWORD");
+    }
+
+    @Benchmark
+    public ItemStack getVanillaItem() {
+        return Hooks.getItem("DIAMOND_SWORD");
+    }
+
+    @Benchmark
+    public ItemStack getHookedItem() {
+        return Hooks.getItem("stubitems:big_sword");
+    }
+
+    @Benchmark
+    public ItemStack getVanillaReference() {
+        return Hooks.getItem(vanillaReference);
+    }
+
+    @Benchmark
+    public ItemStack getHookedReference() {
+        return Hooks.getItem(hookedReference);
+    }
+
+    @Benchmark
+    public ItemStack getUnknownHookItem() {
+        return Hooks.getItem("missing:big_sword");
+    }
+
+    @Benchmark
+    public String getStringHookedItem() {
+        return Hooks.getStringItem(hookedItem);
+    }
+
+    @Benchmark
+    public String getStringVanillaItem() {
+        return Hooks.getStringItem(vanillaItem);
+    }
+
+    private static class StubItemHook extends Hook {
+
+        private final ItemStack item = new ItemStack(Material.NETHERITE_SWORD);
+
+        private StubItemHook() {
+            super("StubItems", HookFlag.ITEM_SUPPORT);
+        }
+
+        @Override
+        public ItemStack getItem(@NotNull String itemId) {
+            return itemId.equals("big_sword") ? item.clone() : null;
+        }
+
+        @Override
+        public String getItemString(@NotNull ItemStack itemStack) {
+            return itemStack == item || itemStack.isSimilar(item) ? "big_sword" : null;
+        }
+    }
+}
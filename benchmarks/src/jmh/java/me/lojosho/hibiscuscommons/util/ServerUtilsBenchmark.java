@@ -0,0 +1,40 @@
+package me.lojosho.hibiscuscommons.util;
+
+import org.bukkit.Color;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing colors from config strings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServerUtilsBenchmark {
+
+    @Benchmark
+    public Color colorFromHex() {
+        return ServerUtils.colorFromString("#FF00AA");
+    }
+
+    @Benchmark
+    public Color colorFromRgb() {
+        return ServerUtils.colorFromString("255,0,170");
+    }
+
+    @Benchmark
+    public Color colorFromInvalid() {
+        return ServerUtils.colorFromString("not a color");
+    }
+
+    @Benchmark
+    public Color hex2Rgb() {
+        return ServerUtils.hex2Rgb("#FF00AA");
+    }
+
+    @Benchmark
+    public Color rgbToRgb() {
+        return ServerUtils.rgbToRgb("255,0,170");
+    }
+}
@@ -0,0 +1,22 @@
+package me.lojosho.hibiscuscommons.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning MiniMessage strings into legacy strings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringUtilsBenchmark {
+
+    @Param({"Plain text", "<red>Red <bold>bold</bold> text", "<gradient:#ff0000:#0000ff>A long gradient across a whole line of lore</gradient>"})
+    public String input;
+
+    @Benchmark
+    public String parseStringToString() {
+        return StringUtils.parseStringToString(input);
+    }
+}
@@ -0,0 +1,81 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import me.lojosho.hibiscuscommons.benchmark.BenchmarkEnvironment;
+import me.lojosho.hibiscuscommons.benchmark.BenchmarkServer;
+import me.lojosho.hibiscuscommons.benchmark.FakeProtocolManager;
+import me.lojosho.hibiscuscommons.benchmark.Stubs;
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building packets natively through the NMS handler with building them through ProtocolLib, and measures a
+ * full {@link PacketManager} send through the ProtocolLib path to a group of stand-in players.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketConstructionBenchmark {
+
+    @Param({"1", "50"})
+    public int viewers;
+
+    private final UUID uuid = UUID.randomUUID();
+    private final List<Player> players = new ArrayList<>();
+    private NMSHandler handler;
+    private Location location;
+    private int entityId;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.setup();
+        BenchmarkServer.setup();
+        FakeProtocolManager.install();
+        handler = new me.lojosho.hibiscuscommons.nms.v1_21_R1.NMSHandler();
+        location = new Location(null, 1, 2, 3, 90, 45);
+        for (int i = 0; i < viewers; i++) players.add(Stubs.create(Player.class));
+        PacketManager.setNativePackets(false);
+    }
+
+    @Benchmark
+    public Object teleportNative() {
+        return handler.createTeleportPacket(entityId++, 1, 2, 3, (byte) 4, (byte) 5, false);
+    }
+
+    @Benchmark
+    public Object teleportProtocolLib() {
+        return ProtocolLibPackets.teleport(entityId++, 1, 2, 3, (byte) 4, (byte) 5, false);
+    }
+
+    @Benchmark
+    public Object spawnNative() {
+        return handler.createSpawnEntityPacket(entityId++, uuid, EntityType.ARMOR_STAND, 1, 2, 3);
+    }
+
+    @Benchmark
+    public Object spawnProtocolLib() {
+        return ProtocolLibPackets.spawnEntity(entityId++, uuid, EntityType.ARMOR_STAND, 1, 2, 3);
+    }
+
+    @Benchmark
+    public Object destroyNative() {
+        return handler.createDestroyPacket(entityId++);
+    }
+
+    @Benchmark
+    public Object destroyProtocolLib() {
+        return ProtocolLibPackets.destroy(new int[] {entityId++});
+    }
+
+    @Benchmark
+    public void sendTeleportProtocolLib() {
+        PacketManager.sendTeleportPacket(entityId++, location, false, players);
+    }
+}
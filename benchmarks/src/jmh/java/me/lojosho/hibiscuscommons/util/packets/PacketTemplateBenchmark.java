@@ -0,0 +1,80 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import me.lojosho.hibiscuscommons.benchmark.BenchmarkEnvironment;
+import org.bukkit.entity.EntityType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building packets from a {@link PacketTemplate} with creating a new {@link PacketContainer} and resolving
+ * its accessors on every call, the way {@link PacketManager} used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketTemplateBenchmark {
+
+    private final UUID uuid = UUID.randomUUID();
+    private int entityId;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.setup();
+    }
+
+    @Benchmark
+    public PacketContainer spawnTemplate() {
+        return ProtocolLibPackets.spawnEntity(entityId++, uuid, EntityType.ARMOR_STAND, 1, 2, 3);
+    }
+
+    @Benchmark
+    public PacketContainer spawnPlain() {
+        PacketContainer packet = new PacketContainer(PacketType.Play.Server.SPAWN_ENTITY);
+        packet.getModifier().writeDefaults();
+        packet.getUUIDs().write(0, uuid);
+        packet.getIntegers().write(0, entityId++);
+        packet.getEntityTypeModifier().write(0, EntityType.ARMOR_STAND);
+        packet.getDoubles().
+                write(0, 1D).
+                write(1, 2D).
+                write(2, 3D);
+        return packet;
+    }
+
+    @Benchmark
+    public PacketContainer teleportTemplate() {
+        return ProtocolLibPackets.teleport(entityId++, 1, 2, 3, (byte) 4, (byte) 5, false);
+    }
+
+    @Benchmark
+    public PacketContainer teleportPlain() {
+        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
+        packet.getIntegers().write(0, entityId++);
+        packet.getDoubles().write(0, 1D);
+        packet.getDoubles().write(1, 2D);
+        packet.getDoubles().write(2, 3D);
+        packet.getBytes().write(0, (byte) 4);
+        packet.getBytes().write(1, (byte) 5);
+        packet.getBooleans().write(0, false);
+        return packet;
+    }
+
+    @Benchmark
+    public PacketContainer rotationTemplate() {
+        return ProtocolLibPackets.rotation(entityId++, (byte) 4, (byte) 5, false);
+    }
+
+    @Benchmark
+    public PacketContainer rotationPlain() {
+        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_LOOK);
+        packet.getIntegers().write(0, entityId++);
+        packet.getBytes().write(0, (byte) 4);
+        packet.getBytes().write(1, (byte) 5);
+        packet.getBooleans().write(0, false);
+        return packet;
+    }
+}
@@ -192,6 +192,21 @@ bukkit {
         "Cosmin" // Fixes an issue with Cosmin loading before and taking /cosmetic, when messing with what we do.
     )
 
+    commands {
+        register("hibiscuscommons") {
+            description = "HibiscusCommons admin command"
+            usage = "/hibiscuscommons metrics [enable|disable|reset|export]"
+            permission = "hibiscuscommons.admin"
+        }
+    }
+
+    permissions {
+        register("hibiscuscommons.admin") {
+            description = "Allows using the HibiscusCommons admin command"
+            default = BukkitPluginDescription.Permission.Default.OP
+        }
+    }
+
     libraries = listOf(
         "net.kyori:adventure-api:4.17.0",
         "net.kyori:adventure-text-minimessage:4.17.0",
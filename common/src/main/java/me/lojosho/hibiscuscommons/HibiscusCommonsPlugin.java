@@ -1,9 +1,17 @@
 package me.lojosho.hibiscuscommons;
 
 import lombok.Getter;
+import me.lojosho.hibiscuscommons.commands.HibiscusCommonsCommand;
 import me.lojosho.hibiscuscommons.hooks.Hooks;
 import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import me.lojosho.hibiscuscommons.util.PlayerIndex;
 import me.lojosho.hibiscuscommons.util.ServerUtils;
+import me.lojosho.hibiscuscommons.util.packets.EntityMovement;
+import me.lojosho.hibiscuscommons.util.packets.EquipmentState;
+import me.lojosho.hibiscuscommons.util.packets.HiddenNameTeams;
+import me.lojosho.hibiscuscommons.util.packets.InventoryShadow;
+import me.lojosho.hibiscuscommons.util.packets.VirtualEntityTracker;
+import org.bukkit.command.PluginCommand;
 
 public final class HibiscusCommonsPlugin extends HibiscusPlugin {
 
@@ -35,6 +43,19 @@ public final class HibiscusCommonsPlugin extends HibiscusPlugin {
 
         // Plugin startup logic
         Hooks.setup();
+        PlayerIndex.setup();
+        VirtualEntityTracker.setup();
+        EquipmentState.setup();
+        InventoryShadow.setup();
+        EntityMovement.setup();
+        HiddenNameTeams.setup();
+
+        PluginCommand command = getCommand("hibiscuscommons");
+        if (command != null) {
+            HibiscusCommonsCommand executor = new HibiscusCommonsCommand();
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        }
 
     }
 }
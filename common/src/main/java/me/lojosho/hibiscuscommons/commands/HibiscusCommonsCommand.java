@@ -0,0 +1,79 @@
+package me.lojosho.hibiscuscommons.commands;
+
+import me.lojosho.hibiscuscommons.util.packets.PacketKind;
+import me.lojosho.hibiscuscommons.util.packets.PacketMetrics;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class HibiscusCommonsCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> METRICS_ACTIONS = List.of("enable", "disable", "reset", "export");
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (args.length == 0 || !args[0].equalsIgnoreCase("metrics")) {
+            sender.sendMessage("Usage: /" + label + " metrics [enable|disable|reset|export]");
+            return true;
+        }
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        switch (action) {
+            case "enable" -> {
+                PacketMetrics.setEnabled(true);
+                sender.sendMessage("Packet metrics enabled.");
+            }
+            case "disable" -> {
+                PacketMetrics.setEnabled(false);
+                sender.sendMessage("Packet metrics disabled.");
+            }
+            case "reset" -> {
+                PacketMetrics.reset();
+                sender.sendMessage("Packet metrics reset.");
+            }
+            case "export" -> {
+                try {
+                    File file = PacketMetrics.export();
+                    sender.sendMessage("Packet metrics written to " + file.getPath());
+                } catch (IOException e) {
+                    sender.sendMessage("Unable to write packet metrics: " + e.getMessage());
+                }
+            }
+            default -> sendSummary(sender);
+        }
+        return true;
+    }
+
+    private void sendSummary(CommandSender sender) {
+        if (!PacketMetrics.isEnabled()) sender.sendMessage("Packet metrics are disabled, showing the last recorded values.");
+        sender.sendMessage("Packets last tick: " + PacketMetrics.getLastTick() + " (peak " + PacketMetrics.getPeakTick() + ")");
+        for (PacketKind kind : PacketKind.values()) {
+            long packets = PacketMetrics.getPackets(kind);
+            if (packets == 0) continue;
+            sender.sendMessage(" " + kind + ": " + packets + " packets, ~" + PacketMetrics.getEstimatedBytes(kind) + " bytes");
+        }
+        for (Map.Entry<String, Long> entry : PacketMetrics.getPacketsByPlugin().entrySet()) {
+            sender.sendMessage(" " + entry.getKey() + ": " + entry.getValue() + " packets");
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        List<String> completions = new ArrayList<>();
+        if (args.length == 1) {
+            if ("metrics".startsWith(args[0].toLowerCase())) completions.add("metrics");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("metrics")) {
+            for (String action : METRICS_ACTIONS) {
+                if (action.startsWith(args[1].toLowerCase())) completions.add(action);
+            }
+        }
+        return completions;
+    }
+}
@@ -0,0 +1,32 @@
+package me.lojosho.hibiscuscommons.config.serializer;
+
+import me.lojosho.hibiscuscommons.hooks.ItemReference;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.spongepowered.configurate.ConfigurationNode;
+import org.spongepowered.configurate.serialize.SerializationException;
+import org.spongepowered.configurate.serialize.TypeSerializer;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ItemReferenceSerializer implements TypeSerializer<ItemReference> {
+    public static final ItemReferenceSerializer INSTANCE = new ItemReferenceSerializer();
+    // A reference can be shared, so every config, and every reload of it, uses the one parsed for an id
+    private final ConcurrentHashMap<String, ItemReference> references = new ConcurrentHashMap<>();
+
+    private ItemReferenceSerializer() {
+    }
+
+    @Override
+    @Nullable
+    public ItemReference deserialize(final Type type, final ConfigurationNode source) throws SerializationException {
+        final String raw = source.getString();
+        if (raw == null) return null;
+        return references.computeIfAbsent(raw, ItemReference::parse);
+    }
+
+    @Override
+    public void serialize(final Type type, @Nullable final ItemReference reference, final ConfigurationNode source) throws SerializationException {
+        source.set(reference == null ? null : reference.getRaw());
+    }
+}
@@ -1,6 +1,7 @@
 package me.lojosho.hibiscuscommons.config.serializer;
 
 import me.lojosho.hibiscuscommons.hooks.Hooks;
+import me.lojosho.hibiscuscommons.hooks.ItemReference;
 import me.lojosho.hibiscuscommons.util.ColorBuilder;
 import me.lojosho.hibiscuscommons.util.InventoryUtils;
 import me.lojosho.hibiscuscommons.util.ServerUtils;
@@ -72,9 +73,9 @@ public class ItemSerializer implements TypeSerializer<ItemStack> {
 
         if (materialNode.virtual()) return null;
 
-        String material = materialNode.getString();
+        ItemReference material = ItemReferenceSerializer.INSTANCE.deserialize(ItemReference.class, materialNode);
 
-        ItemStack item = Hooks.getItem(material);
+        ItemStack item = material == null ? null : Hooks.getItem(material);
         if (item == null) {
             //HMCCosmeticsPlugin.getInstance().getLogger().severe("Invalid Material -> " + material);
             return new ItemStack(Material.AIR);
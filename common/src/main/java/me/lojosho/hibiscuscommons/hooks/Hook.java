@@ -1,11 +1,15 @@
 package me.lojosho.hibiscuscommons.hooks;
 
+import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Entity;
 import org.bukkit.event.Listener;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Represents a hook into other minecraft plugins
  */
@@ -14,6 +18,7 @@ public abstract class Hook implements Listener {
     private boolean active = false;
     private boolean itemHook = false;
     private boolean entityHook = false;
+    private boolean cachingItems = true;
 
     public Hook(@NotNull String id, HookFlag... flags) {
         this.id = id;
@@ -37,6 +42,25 @@ public abstract class Hook implements Listener {
      */
     public void load() { }
 
+    /**
+     * Whether {@link #load()} can run off the main thread, alongside other hooks loading
+     * @return true if loading doesn't touch anything that has to be used from the main thread
+     * @implNote By default, this method returns false
+     */
+    public boolean isLoadAsync() {
+        return false;
+    }
+
+    /**
+     * Gets the ids of the hooks that have to finish loading before this one loads. Hooks that aren't set up are ignored.
+     * @return The hook ids
+     * @implNote By default, this method returns no ids
+     */
+    @NotNull
+    public Collection<String> getLoadAfter() {
+        return Collections.emptyList();
+    }
+
     /**
      * Gets an {@link ItemStack} that is associated with the provided id from the hooked plugin
      * @param itemId The id of the {@link ItemStack}
@@ -48,6 +72,19 @@ public abstract class Hook implements Listener {
         return null;
     }
 
+    /**
+     * Gets an {@link ItemStack} from an already parsed id. Hooks whose ids are a type and a name can override this to use
+     * {@link ItemReference#getKeys()} instead of splitting the id again.
+     * @param reference The parsed id
+     * @return The {@link ItemStack}, or null if the id isn't valid
+     * @implNote By default, this method calls {@link #getItem(String)} with {@link ItemReference#getItemId()}
+     */
+    @Nullable
+    public ItemStack getItem(@NotNull ItemReference reference) {
+        String itemId = reference.getItemId();
+        return itemId == null ? null : getItem(itemId);
+    }
+
     /**
      * Gets the id of this hook
      *
@@ -83,6 +120,7 @@ public abstract class Hook implements Listener {
      */
     public final void setActive(boolean active) {
         this.active = active;
+        HookItemIndex.invalidate();
     }
 
     /**
@@ -111,6 +149,35 @@ public abstract class Hook implements Listener {
         entityHook = enabled;
     }
 
+    /**
+     * Whether the items from {@link #getItem(String)} are remembered by {@link HookItemCache}
+     * @return true if items are cached, false if the hooked plugin is asked every time
+     */
+    public final boolean isCachingItems() {
+        return cachingItems;
+    }
+
+    /**
+     * Sets whether the items from {@link #getItem(String)} are remembered. Turn it off for hooks that can return a
+     * different item for the same id, such as items with random stats.
+     * @param caching true to cache items, false to ask the hooked plugin every time
+     */
+    public final void setCachingItems(boolean caching) {
+        cachingItems = caching;
+        if (!caching) HookItemCache.invalidate(this);
+    }
+
+    /**
+     * Gets the persistent data keys that mark items from the hooked plugin. Every item from the plugin must carry at
+     * least one of them, as items without any are never passed to {@link #getItemString(ItemStack)}.
+     * @return The keys
+     * @implNote By default, this method returns no keys, and the hook is asked about every item
+     */
+    @NotNull
+    public Collection<NamespacedKey> getItemKeys() {
+        return Collections.emptyList();
+    }
+
     public String getItemString(@NotNull ItemStack itemStack) {
         return null;
     }
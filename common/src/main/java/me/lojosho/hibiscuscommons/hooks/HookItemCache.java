@@ -0,0 +1,99 @@
+package me.lojosho.hibiscuscommons.hooks;
+
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.api.events.HibiscusHookReload;
+import org.bukkit.Material;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the items hooks resolved ids to, so {@link Hooks#getItem(String)} only asks the hooked plugin once per id.
+ * Ids the plugin doesn't know are remembered too. Every caller gets its own clone of the remembered item.
+ * <p>
+ * A hook's items are forgotten when {@link HibiscusHookReload} is called for it. Hooks for plugins that reload their
+ * items another way have to call {@link #invalidate(Hook)} on that plugin's reload, and hooks whose items differ every
+ * time, or whose plugin can't tell us when it reloads, turn {@link Hook#setCachingItems(boolean) caching} off. Of the
+ * built-in hooks only ItemsAdder and Oraxen are cached.
+ */
+public class HookItemCache implements Listener {
+
+    // Stands in for ids the hook returned nothing for
+    private static final ItemStack MISS = new ItemStack(Material.AIR);
+    private static final LinkedHashMap<Key, ItemStack> ITEMS = new LinkedHashMap<>(64, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ItemStack> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    @Getter @Setter
+    private static boolean enabled = true;
+    /**
+     * How many items are remembered before the least recently used ones are forgotten
+     */
+    @Getter @Setter
+    private static int maxSize = 2048;
+
+    /**
+     * Gets a clone of the item a hook resolves an id to, resolving it if it isn't remembered
+     * @param hook The hook
+     * @param itemId The id, without the hook's prefix
+     * @param resolver Asks the hook for the item
+     * @return A clone of the item, or null if the hook doesn't know the id
+     */
+    @Nullable
+    static ItemStack get(@NotNull Hook hook, @NotNull String itemId, @NotNull Supplier<ItemStack> resolver) {
+        if (!enabled || !hook.isCachingItems()) return resolver.get();
+        Key key = new Key(hook, itemId);
+        ItemStack item;
+        synchronized (ITEMS) {
+            item = ITEMS.get(key);
+        }
+        if (item == null) {
+            // Resolved outside the lock, two threads asking for the same new id both resolve it
+            ItemStack resolved = resolver.get();
+            item = resolved == null ? MISS : resolved.clone();
+            synchronized (ITEMS) {
+                ITEMS.put(key, item);
+            }
+        }
+        return item == MISS ? null : item.clone();
+    }
+
+    /**
+     * Forgets every item a hook resolved
+     * @param hook The hook
+     */
+    public static void invalidate(@NotNull Hook hook) {
+        synchronized (ITEMS) {
+            ITEMS.keySet().removeIf(key -> key.hook == hook);
+        }
+    }
+
+    /**
+     * Forgets every resolved item
+     */
+    public static void invalidate() {
+        synchronized (ITEMS) {
+            ITEMS.clear();
+        }
+    }
+
+    // Runs first so listeners of the reload already get the new items
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onHookReload(HibiscusHookReload event) {
+        invalidate(event.getHook());
+    }
+
+    private record Key(Hook hook, String itemId) {
+    }
+}
@@ -0,0 +1,126 @@
+package me.lojosho.hibiscuscommons.hooks;
+
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.api.events.HibiscusHookReload;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out which hook an item comes from for {@link Hooks#getStringItem(ItemStack)}. Hooks that declare
+ * {@link Hook#getItemKeys() the keys} their items carry are only asked about items with one of those keys, found in one
+ * pass over the item's persistent data. Hooks that don't declare any are asked about every item, after the others.
+ * <p>
+ * Items without meta are never custom items. Answers are remembered by the item's type and the hash code of its meta,
+ * which leaves the amount out, so the same item in stacks of any size is only looked at once. Answers are forgotten
+ * when any hook is reloaded.
+ */
+public class HookItemIndex implements Listener {
+
+    private static final LinkedHashMap<Fingerprint, String> IDENTIFIED = new LinkedHashMap<>(64, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, String> eldest) {
+            return size() > maxSize;
+        }
+    };
+    private static Map<NamespacedKey, Hook> keyedHooks;
+    private static List<Hook> unkeyedHooks;
+
+    /**
+     * How many identified items are remembered before the least recently used ones are forgotten
+     */
+    @Getter @Setter
+    private static int maxSize = 1024;
+
+    /**
+     * Identifies an item
+     * @param itemStack The item
+     * @return The hook id and the item's id in it separated by ':', or the material name for vanilla items
+     */
+    @NotNull
+    static String identify(@NotNull ItemStack itemStack) {
+        if (!itemStack.hasItemMeta()) return itemStack.getType().toString();
+        ItemMeta meta = itemStack.getItemMeta();
+        if (meta == null) return itemStack.getType().toString();
+        Fingerprint fingerprint = new Fingerprint(itemStack.getType(), meta.hashCode());
+        synchronized (IDENTIFIED) {
+            String identified = IDENTIFIED.get(fingerprint);
+            if (identified != null) return identified;
+        }
+        String identified = lookup(itemStack, meta);
+        synchronized (IDENTIFIED) {
+            IDENTIFIED.put(fingerprint, identified);
+        }
+        return identified;
+    }
+
+    private static String lookup(ItemStack itemStack, ItemMeta meta) {
+        Map<NamespacedKey, Hook> keyed;
+        List<Hook> unkeyed;
+        synchronized (IDENTIFIED) {
+            if (keyedHooks == null) index();
+            keyed = keyedHooks;
+            unkeyed = unkeyedHooks;
+        }
+
+        if (!keyed.isEmpty()) {
+            for (NamespacedKey key : meta.getPersistentDataContainer().getKeys()) {
+                Hook hook = keyed.get(key);
+                if (hook == null) continue;
+                String stringyItem = hook.getItemString(itemStack);
+                if (stringyItem != null) return hook.getId() + ":" + stringyItem;
+            }
+        }
+        for (Hook hook : unkeyed) {
+            String stringyItem = hook.getItemString(itemStack);
+            if (stringyItem != null) return hook.getId() + ":" + stringyItem;
+        }
+        return itemStack.getType().toString();
+    }
+
+    private static void index() {
+        HashMap<NamespacedKey, Hook> keyed = new HashMap<>();
+        ArrayList<Hook> unkeyed = new ArrayList<>();
+        for (Hook hook : Hooks.getHooks()) {
+            if (!hook.isActive() || !hook.hasEnabledItemHook()) continue;
+            if (hook.getItemKeys().isEmpty()) {
+                unkeyed.add(hook);
+                continue;
+            }
+            for (NamespacedKey key : hook.getItemKeys()) keyed.put(key, hook);
+        }
+        keyedHooks = keyed;
+        unkeyedHooks = unkeyed;
+    }
+
+    /**
+     * Forgets every identified item and which hooks are active
+     */
+    public static void invalidate() {
+        synchronized (IDENTIFIED) {
+            IDENTIFIED.clear();
+            keyedHooks = null;
+            unkeyedHooks = null;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onHookReload(HibiscusHookReload event) {
+        invalidate();
+    }
+
+    private record Fingerprint(Material type, int metaHash) {
+    }
+}
@@ -0,0 +1,116 @@
+package me.lojosho.hibiscuscommons.hooks;
+
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+/**
+ * Calls {@link Hook#load()} for the hooks found during {@link Hooks#setup()}. Hooks are loaded in levels, every hook
+ * after the hooks it {@link Hook#getLoadAfter() loads after}. Within a level, hooks that
+ * {@link Hook#isLoadAsync() can load async} load in parallel while the rest load on the main thread.
+ */
+final class HookLoader {
+
+    private HookLoader() {
+    }
+
+    /**
+     * Loads hooks, returning once all of them have loaded
+     * @param hooks The hooks
+     * @return How long each hook took to load, in nanoseconds
+     */
+    static Map<Hook, Long> load(List<Hook> hooks) {
+        Map<Hook, Long> times = new ConcurrentHashMap<>();
+        ExecutorService executor = null;
+        try {
+            for (List<Hook> level : levels(hooks)) {
+                List<Future<?>> running = new ArrayList<>();
+                for (Hook hook : level) {
+                    if (!hook.isLoadAsync()) continue;
+                    if (executor == null) executor = createExecutor(hooks.size());
+                    running.add(executor.submit(() -> load(hook, times)));
+                }
+                for (Hook hook : level) {
+                    if (!hook.isLoadAsync()) load(hook, times);
+                }
+                for (Future<?> future : running) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return times;
+                    } catch (ExecutionException ignored) {
+                        // Failures are logged by the hook's own task
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) executor.shutdown();
+        }
+        return times;
+    }
+
+    private static void load(Hook hook, Map<Hook, Long> times) {
+        long start = System.nanoTime();
+        try {
+            hook.load();
+        } catch (Exception e) {
+            HibiscusCommonsPlugin.getInstance().getLogger().log(Level.SEVERE, "Unable to load the hook for " + hook.getId(), e);
+        }
+        times.put(hook, System.nanoTime() - start);
+    }
+
+    private static ExecutorService createExecutor(int hookCount) {
+        int threads = Math.max(1, Math.min(hookCount, Runtime.getRuntime().availableProcessors()));
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "HibiscusCommons Hook Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Groups hooks by how many hooks have to load before them
+    private static List<List<Hook>> levels(List<Hook> hooks) {
+        HashMap<String, Hook> byId = new HashMap<>();
+        for (Hook hook : hooks) byId.put(hook.getId().toLowerCase(), hook);
+
+        HashMap<Hook, Integer> depths = new HashMap<>();
+        List<List<Hook>> levels = new ArrayList<>();
+        for (Hook hook : hooks) {
+            int depth = depth(hook, byId, depths, new HashSet<>());
+            while (levels.size() <= depth) levels.add(new ArrayList<>());
+            levels.get(depth).add(hook);
+        }
+        return levels;
+    }
+
+    private static int depth(Hook hook, Map<String, Hook> byId, Map<Hook, Integer> depths, Set<Hook> visiting) {
+        Integer known = depths.get(hook);
+        if (known != null) return known;
+        if (!visiting.add(hook)) {
+            HibiscusCommonsPlugin.getInstance().getLogger().warning("The hook for " + hook.getId() + " loads after a hook that loads after it, ignoring the order");
+            return 0;
+        }
+        int depth = 0;
+        for (String id : hook.getLoadAfter()) {
+            Hook dependency = byId.get(id.toLowerCase());
+            // Hooks for plugins that aren't installed don't hold anything up
+            if (dependency == null || dependency == hook) continue;
+            depth = Math.max(depth, depth(dependency, byId, depths, visiting) + 1);
+        }
+        visiting.remove(hook);
+        depths.put(hook, depth);
+        return depth;
+    }
+}
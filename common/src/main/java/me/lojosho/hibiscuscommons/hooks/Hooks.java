@@ -3,49 +3,146 @@ package me.lojosho.hibiscuscommons.hooks;
 import me.clip.placeholderapi.PlaceholderAPI;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
-import me.lojosho.hibiscuscommons.hooks.items.*;
-import me.lojosho.hibiscuscommons.hooks.misc.*;
 import me.lojosho.hibiscuscommons.hooks.placeholders.HookPlaceholderAPI;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Hooks {
 
-    private static final HashMap<String, Hook> hooks = new HashMap<>();
-    private static final HookOraxen ORAXEN_HOOK = new HookOraxen();
-    private static final HookItemAdder ITEMADDER_HOOK = new HookItemAdder();
-    private static final HookGeary GEARY_HOOK = new HookGeary();
-    private static final HookMythic MYTHIC_HOOK = new HookMythic();
-    private static final HookDenizen DENIZEN_HOOK = new HookDenizen();
-    private static final HookPremiumVanish PREMIUM_VANISH_HOOK = new HookPremiumVanish();
-    private static final HookSuperVanish SUPER_VANISH_HOOK = new HookSuperVanish();
-    private static final HookHMCColor HMC_COLOR_HOOK = new HookHMCColor();
-    private static final HookCMI CMI_HOOK = new HookCMI();
-    private static final HookLibsDisguises LIBS_DISGUISES_HOOK = new HookLibsDisguises();
-    private static final HookModelEngine MODEL_ENGINE_HOOK = new HookModelEngine();
-    private static final HookMMOItems MMO_ITEMS_HOOK = new HookMMOItems();
-    private static final HookEco ECO_ITEMS_HOOK = new HookEco();
-    private static final HookPlaceholderAPI PAPI_HOOK = new HookPlaceholderAPI();
-    private static final HookCustomFishing CF_HOOK = new HookCustomFishing();
+    private static final ConcurrentHashMap<String, Hook> hooks = new ConcurrentHashMap<>();
+    // Hooks that haven't been created yet, by id. A hook's class is only loaded once its plugin is found.
+    // Hooks can be asked for from any thread, so this is only used while holding its lock.
+    private static final LinkedHashMap<String, Factory> factories = new LinkedHashMap<>();
+    // Ids whose plugin wasn't installed once set up, so asking for them again doesn't take the lock
+    private static final Set<String> missing = ConcurrentHashMap.newKeySet();
+    private static volatile boolean setup = false;
 
+    static {
+        registerBuiltIn("oraxen", "items.HookOraxen");
+        registerBuiltIn("itemsadder", "items.HookItemAdder");
+        registerBuiltIn("geary", "items.HookGeary");
+        registerBuiltIn("mythicmobs", "items.HookMythic");
+        registerBuiltIn("denizen", "items.HookDenizen");
+        registerBuiltIn("PremiumVanish", "misc.HookPremiumVanish");
+        registerBuiltIn("SuperVanish", "misc.HookSuperVanish");
+        registerBuiltIn("HMCColor", "misc.HookHMCColor");
+        registerBuiltIn("CMI", "misc.HookCMI");
+        registerBuiltIn("LibsDisguises", "misc.HookLibsDisguises");
+        registerBuiltIn("ModelEngine", "misc.HookModelEngine");
+        registerBuiltIn("MMOItems", "items.HookMMOItems");
+        registerBuiltIn("Eco", "items.HookEco");
+        registerBuiltIn("PlaceholderAPI", "placeholders.HookPlaceholderAPI");
+        registerBuiltIn("CustomFishing", "misc.HookCustomFishing");
+    }
 
+    /**
+     * Gets a hook, creating it if its plugin is installed and it hasn't been created yet
+     * @param id The id of the hook, which is also the name of the plugin it hooks into
+     * @return The hook, or null if there isn't one or its plugin isn't installed
+     */
     public static Hook getHook(@NotNull String id) {
-        return hooks.get(id.toLowerCase());
+        String key = id.toLowerCase();
+        Hook hook = hooks.get(key);
+        if (hook != null) return hook;
+        if (missing.contains(key)) return null;
+        return create(key);
     }
 
     public static boolean isItemHook(@NotNull String id) {
-        return hooks.containsKey(id.toLowerCase());
+        return getHook(id) != null;
     }
 
     public static void addHook(Hook hook) {
         hooks.put(hook.getId().toLowerCase(), hook);
+        synchronized (factories) {
+            factories.remove(hook.getId().toLowerCase());
+        }
+        HookItemIndex.invalidate();
+    }
+
+    /**
+     * Registers a hook that is only created if the plugin it hooks into is installed, so its class, and the classes of
+     * the plugin it uses, are never loaded otherwise. Hooks registered after {@link #setup()} are created and activated
+     * once their plugin is enabled, straight away if it already is.
+     * @param id The id of the hook, which is also the name of the plugin it hooks into
+     * @param factory Creates the hook
+     */
+    public static void registerFactory(@NotNull String id, @NotNull Supplier<? extends Hook> factory) {
+        String key = id.toLowerCase();
+        if (hooks.containsKey(key)) return;
+        synchronized (factories) {
+            factories.put(key, new Factory(id, factory));
+        }
+        if (setup && Bukkit.getPluginManager().isPluginEnabled(id)) createAndActivate(key);
+    }
+
+    private static void createAndActivate(String key) {
+        Hook hook = create(key);
+        if (hook != null && !hook.isActive()) activate(hook);
+    }
+
+    private static void registerBuiltIn(String id, String className) {
+        String fullName = Hooks.class.getPackageName() + "." + className;
+        factories.put(id.toLowerCase(), new Factory(id, () -> {
+            try {
+                return (Hook) Class.forName(fullName).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create hook " + fullName, e);
+            }
+        }));
+    }
+
+    private static Hook create(String key) {
+        synchronized (factories) {
+            Factory factory = factories.get(key);
+            // Another thread may have created it in the meantime
+            if (factory == null) {
+                Hook hook = hooks.get(key);
+                if (hook == null && setup) missing.add(key);
+                return hook;
+            }
+            if (Bukkit.getPluginManager().getPlugin(factory.id) == null) {
+                if (setup) missing.add(key);
+                return null;
+            }
+            factories.remove(key);
+            try {
+                Hook hook = factory.supplier.get();
+                // The hook adds itself when it's created, this covers factories that hand out an existing hook
+                addHook(hook);
+                return hook;
+            } catch (RuntimeException | LinkageError e) {
+                HibiscusCommonsPlugin.getInstance().getLogger().log(Level.SEVERE, "Unable to create the hook for " + key, e);
+                return null;
+            }
+        }
+    }
+
+    static Collection<Hook> getHooks() {
+        return hooks.values();
     }
 
     public static void addPlaceholderAPI(PlaceholderExpansion expansion) {
@@ -62,44 +159,109 @@ public class Hooks {
     }
 
     public static void setup() {
+        PluginManager pluginManager = HibiscusCommonsPlugin.getInstance().getServer().getPluginManager();
+        pluginManager.registerEvents(new HookItemCache(), HibiscusCommonsPlugin.getInstance());
+        pluginManager.registerEvents(new HookItemIndex(), HibiscusCommonsPlugin.getInstance());
+        pluginManager.registerEvents(new PluginListener(), HibiscusCommonsPlugin.getInstance());
+        setup = true;
+        long start = System.nanoTime();
+
+        HashMap<Hook, Long> createTimes = new HashMap<>();
+        List<String> keys;
+        synchronized (factories) {
+            keys = new ArrayList<>(factories.keySet());
+        }
+        for (String key : keys) {
+            long createStart = System.nanoTime();
+            Hook hook = create(key);
+            if (hook != null) createTimes.put(hook, System.nanoTime() - createStart);
+        }
+
+        List<Hook> found = new ArrayList<>();
         for (Hook hook : hooks.values()) {
-            if (Bukkit.getPluginManager().getPlugin(hook.getId()) != null) {
-                HibiscusCommonsPlugin.getInstance().getServer().getPluginManager().registerEvents(hook, HibiscusCommonsPlugin.getInstance());
-                hook.setActive(true);
-                hook.load();
-                HibiscusCommonsPlugin.getInstance().getLogger().info("Successfully hooked into " + hook.getId());
-            }
+            if (pluginManager.getPlugin(hook.getId()) != null) found.add(hook);
+        }
+        // Registering listeners has to happen on the main thread, so it's done for every hook before any of them load
+        for (Hook hook : found) {
+            pluginManager.registerEvents(hook, HibiscusCommonsPlugin.getInstance());
+            hook.setActive(true);
         }
+        Map<Hook, Long> loadTimes = HookLoader.load(found);
+
+        // Slowest hooks first
+        found.sort(Comparator.comparingLong((Hook hook) -> createTimes.getOrDefault(hook, 0L) + loadTimes.getOrDefault(hook, 0L)).reversed());
+        Logger logger = HibiscusCommonsPlugin.getInstance().getLogger();
+        for (Hook hook : found) {
+            logger.info("Successfully hooked into " + hook.getId() + " (created in " + millis(createTimes.getOrDefault(hook, 0L))
+                    + "ms, loaded in " + millis(loadTimes.getOrDefault(hook, 0L)) + "ms)");
+        }
+        logger.info("Set up " + found.size() + " hooks in " + millis(System.nanoTime() - start) + "ms");
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000D);
+    }
+
+    private static void activate(Hook hook) {
+        HibiscusCommonsPlugin.getInstance().getServer().getPluginManager().registerEvents(hook, HibiscusCommonsPlugin.getInstance());
+        hook.setActive(true);
+        hook.load();
+        HibiscusCommonsPlugin.getInstance().getLogger().info("Successfully hooked into " + hook.getId());
     }
 
+    /**
+     * Creates an item from an id, parsing the id every time. Keep an {@link ItemReference} for ids that are resolved often.
+     * @param raw A material name, or a hook id and the id of an item in it separated by ':'
+     * @return The item, or null if it doesn't exist
+     */
     @Nullable
     public static ItemStack getItem(@NotNull String raw) {
-        if (!raw.contains(":")) {
-            Material mat = Material.getMaterial(raw.toUpperCase());
-            if (mat == null) return null;
-            return new ItemStack(mat);
-        }
-        // Ex. Oraxen:BigSword
-        // split[0] is the plugin name
-        // split[1] is the item name
-        String[] split = raw.split(":", 2);
+        return ItemReference.parse(raw).resolve();
+    }
 
-        if (!isItemHook(split[0])) return null;
-        Hook hook = getHook(split[0]);
-        if (!hook.hasEnabledItemHook()) return null;
-        if (!hook.isActive()) return null;
-        return hook.getItem(split[1]);
+    /**
+     * Creates an item from an already parsed id
+     * @param reference The parsed id
+     * @return The item, or null if it doesn't exist
+     */
+    @Nullable
+    public static ItemStack getItem(@NotNull ItemReference reference) {
+        return reference.resolve();
     }
 
+    /**
+     * Gets the id an item can be created from again with {@link #getItem(String)}
+     * @param itemStack The item
+     * @return The hook id and the item's id in it separated by ':', or the material name for vanilla items
+     */
     public static String getStringItem(ItemStack itemStack) {
-        for (Hook hook : hooks.values()) {
-            if (hook.isActive() && hook.hasEnabledItemHook()) {
-                String stringyItem = hook.getItemString(itemStack);
-                if (stringyItem == null) continue;
-                return hook.getId() + ":" + stringyItem;
-            }
+        return HookItemIndex.identify(itemStack);
+    }
+
+    /**
+     * Gets the ids of every item in an inventory, in one call
+     * @param inventory The inventory
+     * @return The ids, by slot, with null for empty slots
+     */
+    @NotNull
+    public static String[] getStringItems(@NotNull Inventory inventory) {
+        return getStringItems(inventory.getContents());
+    }
+
+    /**
+     * Gets the ids of several items, in one call. Items that only differ from one earlier in the array by amount aren't looked at again.
+     * @param items The items
+     * @return The ids, in the same order as the items, with null for empty items
+     */
+    @NotNull
+    public static String[] getStringItems(@Nullable ItemStack @NotNull [] items) {
+        String[] ids = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ItemStack item = items[i];
+            if (item == null || item.getType().isAir()) continue;
+            ids[i] = HookItemIndex.identify(item);
         }
-        return itemStack.getType().toString();
+        return ids;
     }
 
     public static String getStringEntity(Entity entity) {
@@ -118,4 +280,22 @@ public class Hooks {
         if (hook == null) return false;
         return hook.isActive();
     }
+
+    // Hooks registered for plugins that weren't enabled yet are created once they are
+    private static class PluginListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPluginEnable(PluginEnableEvent event) {
+            String key = event.getPlugin().getName().toLowerCase();
+            missing.remove(key);
+            boolean pending;
+            synchronized (factories) {
+                pending = factories.containsKey(key);
+            }
+            if (pending) createAndActivate(key);
+        }
+    }
+
+    private record Factory(String id, Supplier<? extends Hook> supplier) {
+    }
 }
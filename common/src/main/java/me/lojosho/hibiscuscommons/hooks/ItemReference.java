@@ -0,0 +1,90 @@
+package me.lojosho.hibiscuscommons.hooks;
+
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An item id from a config, such as {@code DIAMOND_SWORD} or {@code oraxen:big_sword}, parsed once so resolving it
+ * again doesn't split strings or look anything up by name. Keep references around, for example from config load,
+ * and {@link #resolve()} them whenever a new item is needed.
+ */
+public final class ItemReference {
+
+    /**
+     * What the reference was parsed from
+     */
+    @Getter
+    private final String raw;
+    /**
+     * The material of a vanilla item, null for items from hooks
+     */
+    @Getter @Nullable
+    private final Material material;
+    /**
+     * The id of the item in the hooked plugin, without the hook's prefix
+     */
+    @Getter @Nullable
+    private final String itemId;
+    /**
+     * The item id split on its first ':', for hooks whose ids are a type and a name
+     */
+    @Getter @NotNull
+    private final String[] keys;
+    private final String hookId;
+    private Hook hook;
+
+    private ItemReference(String raw, Material material, String hookId, String itemId) {
+        this.raw = raw;
+        this.material = material;
+        this.hookId = hookId;
+        this.itemId = itemId;
+        this.keys = itemId == null ? new String[0] : itemId.split(":", 2);
+        this.hook = hookId == null ? null : Hooks.getHook(hookId);
+    }
+
+    /**
+     * Parses an item id
+     * @param raw A material name, or a hook id and the id of an item in it separated by ':'
+     * @return The reference, which resolves to null if the id isn't valid
+     */
+    @NotNull
+    public static ItemReference parse(@NotNull String raw) {
+        int separator = raw.indexOf(':');
+        if (separator == -1) return new ItemReference(raw, Material.getMaterial(raw.toUpperCase()), null, null);
+        // Ex. Oraxen:BigSword
+        return new ItemReference(raw, null, raw.substring(0, separator), raw.substring(separator + 1));
+    }
+
+    /**
+     * Gets the hook the item comes from
+     * @return The hook, or null for vanilla items and hooks that don't exist
+     */
+    @Nullable
+    public Hook getHook() {
+        // The hook may be added after the reference was parsed
+        if (hook == null && hookId != null) hook = Hooks.getHook(hookId);
+        return hook;
+    }
+
+    /**
+     * Creates a new item from the reference
+     * @return The item, or null if the material or hooked item doesn't exist, or the hook isn't active
+     */
+    @Nullable
+    public ItemStack resolve() {
+        if (hookId == null) return material == null ? null : new ItemStack(material);
+        Hook hook = getHook();
+        if (hook == null) return null;
+        if (!hook.hasEnabledItemHook()) return null;
+        if (!hook.isActive()) return null;
+        return HookItemCache.get(hook, itemId, () -> hook.getItem(this));
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
@@ -14,6 +14,8 @@ import org.jetbrains.annotations.NotNull;
 public class HookDenizen extends Hook {
     public HookDenizen() {
         super("denizen", HookFlag.ITEM_SUPPORT);
+        // Script items are generated every time and can differ between calls
+        setCachingItems(false);
     }
 
     /**
@@ -9,6 +9,8 @@ import org.jetbrains.annotations.NotNull;
 public class HookEco extends Hook {
     public HookEco() {
         super("Eco", HookFlag.ITEM_SUPPORT);
+        // Eco has no reload event to forget its items on
+        setCachingItems(false);
     }
 
     @Override
@@ -14,6 +14,8 @@ public class HookGeary extends Hook {
 
     public HookGeary() {
         super("geary", HookFlag.ITEM_SUPPORT);
+        // Items are created with their own entity data every time
+        setCachingItems(false);
     }
 
     /**
@@ -65,8 +65,9 @@ public class HookItemAdder extends Hook {
     public String getItemString(ItemStack itemStack) {
         if (itemStack == null) return null;
         if (!itemStack.hasItemMeta()) return null;
-        if (CustomStack.byItemStack(itemStack) == null) return null;
-        return CustomStack.byItemStack(itemStack).getId();
+        CustomStack stack = CustomStack.byItemStack(itemStack);
+        if (stack == null) return null;
+        return stack.getId();
     }
 
     public boolean getIAEnabled() {
@@ -2,6 +2,7 @@ package me.lojosho.hibiscuscommons.hooks.items;
 
 import me.lojosho.hibiscuscommons.hooks.Hook;
 import me.lojosho.hibiscuscommons.hooks.HookFlag;
+import me.lojosho.hibiscuscommons.hooks.ItemReference;
 import net.Indyuce.mmoitems.MMOItems;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
@@ -9,6 +10,8 @@ import org.jetbrains.annotations.NotNull;
 public class HookMMOItems extends Hook {
     public HookMMOItems() {
         super("MMOItems", HookFlag.ITEM_SUPPORT);
+        // Every item is built again, with its own rolled stats
+        setCachingItems(false);
     }
 
     @Override
@@ -19,4 +22,12 @@ public class HookMMOItems extends Hook {
         }
         return null;
     }
+
+    @Override
+    public ItemStack getItem(@NotNull ItemReference reference) {
+        // Ex. MMOItems:SWORD:CUTLASS, split once when the reference was parsed
+        String[] keys = reference.getKeys();
+        if (keys.length < 2) return null;
+        return MMOItems.plugin.getItem(keys[0], keys[1]);
+    }
 }
@@ -15,6 +15,8 @@ import org.jetbrains.annotations.NotNull;
 public class HookMythic extends Hook {
     public HookMythic() {
         super("mythicmobs", HookFlag.ITEM_SUPPORT, HookFlag.ENTITY_SUPPORT);
+        // Items are generated every time and can differ between calls
+        setCachingItems(false);
     }
 
     /**
@@ -1,21 +1,36 @@
 package me.lojosho.hibiscuscommons.hooks.items;
 
 import io.th0rgal.oraxen.api.OraxenItems;
+import io.th0rgal.oraxen.api.events.OraxenItemsLoadedEvent;
 import io.th0rgal.oraxen.items.ItemBuilder;
 import me.lojosho.hibiscuscommons.hooks.Hook;
 import me.lojosho.hibiscuscommons.hooks.HookFlag;
+import me.lojosho.hibiscuscommons.hooks.HookItemCache;
+import org.bukkit.NamespacedKey;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * A hook that integrates the plugin {@link io.th0rgal.oraxen.OraxenPlugin OraxenPlugin} to provide custom items
  */
 @SuppressWarnings("SpellCheckingInspection")
 public class HookOraxen extends Hook {
+    private static final List<NamespacedKey> ITEM_KEYS = List.of(new NamespacedKey("oraxen", "id"));
+
     public HookOraxen() {
         super("oraxen", HookFlag.ITEM_SUPPORT);
     }
 
+    @Override
+    public @NotNull Collection<NamespacedKey> getItemKeys() {
+        return ITEM_KEYS;
+    }
+
     /**
      * Gets a cosmetic {@link ItemStack} that is associated with the provided id from the plugin {@link io.th0rgal.oraxen.OraxenPlugin OraxenPlugin}
      */
@@ -26,6 +41,12 @@ public class HookOraxen extends Hook {
         return builder.build();
     }
 
+    // Oraxen reloads its items without a HibiscusHookReload
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onOraxenItemsLoaded(OraxenItemsLoadedEvent event) {
+        HookItemCache.invalidate(this);
+    }
+
     @Override
     public String getItemString(ItemStack itemStack) {
         if (itemStack == null) return null;
@@ -1,35 +1,101 @@
 package me.lojosho.hibiscuscommons.nms;
 
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public interface NMSHandler {
 
     int getNextEntityId();
 
+    /**
+     * Reserves a block of consecutive entity ids from the server's counter
+     * @return The first id of the block, or -1 if this version can't reserve blocks
+     */
+    default int reserveEntityIds(int count) {
+        return -1;
+    }
+
     Entity getEntity(int entityId);
 
+    /**
+     * Looks for an entity in a single world
+     */
+    default Entity getEntity(World world, int entityId) {
+        Entity entity = getEntity(entityId);
+        return entity != null && entity.getWorld().equals(world) ? entity : null;
+    }
+
+    /**
+     * Looks up several entities, going over the worlds once rather than once per id
+     * @return The entities, in the same order as the ids, with null for any that weren't found
+     */
+    default Entity[] getEntities(int... entityIds) {
+        Entity[] entities = new Entity[entityIds.length];
+        for (int i = 0; i < entityIds.length; i++) entities[i] = getEntity(entityIds[i]);
+        return entities;
+    }
+
     void slotUpdate(
             Player player,
             int slot
     );
 
-    void equipmentSlotUpdate(
+    /**
+     * Creates a packet that shows an item in one of a player's inventory slots, without changing the real inventory
+     * @param player The player
+     * @param slot The slot, numbered the way {@link org.bukkit.inventory.PlayerInventory} numbers them
+     * @param item The item to show
+     * @return The NMS packet
+     * @throws IllegalArgumentException If the slot isn't part of a player's inventory
+     */
+    Object createSlotPacket(Player player, int slot, ItemStack item);
+
+    /**
+     * Creates a packet that resends a player's whole inventory, with some slots showing other items
+     * @param player The player
+     * @param items The items to show instead, by {@link org.bukkit.inventory.PlayerInventory} slot
+     * @return The NMS packet
+     */
+    Object createInventoryContentPacket(Player player, Map<Integer, ItemStack> items);
+
+    default void equipmentSlotUpdate(
             int entityId,
             org.bukkit.inventory.EquipmentSlot slot,
             ItemStack item,
             List<Player> sendTo
-    );
+    ) {
+        equipmentSlotUpdate(entityId, slot, item, (Collection<? extends Player>) sendTo);
+    }
 
     void equipmentSlotUpdate(
+            int entityId,
+            org.bukkit.inventory.EquipmentSlot slot,
+            ItemStack item,
+            Collection<? extends Player> sendTo
+    );
+
+    default void equipmentSlotUpdate(
             int entityId,
             HashMap<EquipmentSlot, ItemStack> equipment,
             List<Player> sendTo
+    ) {
+        equipmentSlotUpdate(entityId, equipment, (Collection<? extends Player>) sendTo);
+    }
+
+    void equipmentSlotUpdate(
+            int entityId,
+            HashMap<EquipmentSlot, ItemStack> equipment,
+            Collection<? extends Player> sendTo
     );
 
     void hideNPCName(
@@ -37,6 +103,121 @@ public interface NMSHandler {
             String NPCName
     );
 
+    /**
+     * Hides the nametags of several NPCs, sending the player only the names they don't already have hidden
+     */
+    default void hideNPCNames(
+            Player player,
+            Collection<String> NPCNames
+    ) {
+        for (String name : NPCNames) hideNPCName(player, name);
+    }
+
+    /**
+     * Creates the packet that removes a team from the client
+     */
+    Object createRemoveTeamPacket(String teamName);
+
+    /**
+     * Creates the packet that adds a team that never shows nametags, with its members, to the client
+     */
+    Object createHiddenNameTeamPacket(String teamName, Collection<String> members);
+
+    /**
+     * Creates the packet that adds players to or removes them from a team the client already has
+     */
+    Object createTeamMembersPacket(String teamName, Collection<String> members, boolean add);
+
+    /**
+     * Sends an NMS packet straight to the player's connection
+     */
+    void sendPacket(
+            Player player,
+            Object packet
+    );
+
+    /**
+     * Sends several NMS packets to a player as bundles, so the client applies them in the same frame
+     */
+    void sendBundledPackets(
+            Player player,
+            List<Object> packets
+    );
+
+    /**
+     * Writes an already encoded packet (the VarInt packet id followed by its payload) to every player's connection,
+     * sharing a single buffer between them
+     */
+    void sendEncodedPacket(
+            byte[] packet,
+            Collection<? extends Player> sendTo
+    );
+
+    /**
+     * Whether the player's connection can take more packets without growing its outbound buffer past netty's high water mark
+     */
+    default boolean isWritable(
+            Player player
+    ) {
+        return true;
+    }
+
+    /**
+     * Runs a task on the thread that writes to the player's connection. Tasks for the same player run in the order
+     * they were submitted, and in order with packets sent to that player through {@link #sendPacket(Player, Object)}.
+     */
+    default void runOnEventLoop(
+            Player player,
+            Runnable task
+    ) {
+        task.run();
+    }
+
+    /*
+     * Packet factories. Each returns the NMS packet, or null when this version can't build it natively and the
+     * caller should fall back to ProtocolLib.
+     */
+
+    default Object createSpawnEntityPacket(int entityId, UUID uuid, EntityType entityType, double x, double y, double z) {
+        return null;
+    }
+
+    default Object createMountPacket(int mountId, int[] passengerIds) {
+        return null;
+    }
+
+    default Object createHeadRotationPacket(int entityId, byte yaw) {
+        return null;
+    }
+
+    default Object createRotationPacket(int entityId, byte yaw, byte pitch, boolean onGround) {
+        return null;
+    }
+
+    default Object createTeleportPacket(int entityId, double x, double y, double z, byte yaw, byte pitch, boolean onGround) {
+        return null;
+    }
+
+    default Object createRelativeMovePacket(int entityId, short deltaX, short deltaY, short deltaZ, boolean onGround) {
+        return null;
+    }
+
+    default Object createRelativeMoveLookPacket(int entityId, short deltaX, short deltaY, short deltaZ, byte yaw, byte pitch, boolean onGround) {
+        return null;
+    }
+
+    default Object createDestroyPacket(int... entityIds) {
+        return null;
+    }
+
+    default Object createCameraPacket(int entityId) {
+        return null;
+    }
+
+    default Object createLeashPacket(int leashedEntity, int holderEntity) {
+        return null;
+    }
+
     default boolean getSupported () {
         return false;
     }
@@ -0,0 +1,139 @@
+package me.lojosho.hibiscuscommons.util;
+
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import me.lojosho.hibiscuscommons.util.packets.InteractionRouter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out ids for packet only entities. Ids are reserved from the server's entity counter in blocks, and every thread
+ * takes ids from the current block by bumping its cursor, so most ids are handed out without touching the server's
+ * counter, and no ids are left stranded in blocks of threads that have ended.
+ * <p>
+ * Released ids are handed out again once a grace period has passed, long enough for the destroy packet to have reached
+ * every client. Ids can be allocated with an owner, which can then be looked up by id.
+ */
+public class EntityIdAllocator {
+
+    private static final AtomicReference<Block> BLOCK = new AtomicReference<>(new Block(0, 0));
+    private static final ArrayDeque<Released> RELEASED = new ArrayDeque<>();
+    private static final ConcurrentHashMap<Integer, Object> OWNERS = new ConcurrentHashMap<>();
+
+    /**
+     * How many ids are reserved from the server at a time
+     */
+    @Getter @Setter
+    private static int blockSize = 256;
+    /**
+     * How long, in milliseconds, a released id waits before it is handed out again
+     */
+    @Getter @Setter
+    private static long recycleDelay = 10_000L;
+
+    /**
+     * Gets an id that no other entity is using
+     * @return The id
+     */
+    public static int allocate() {
+        Integer recycled = pollReleased();
+        if (recycled != null) return recycled;
+        while (true) {
+            Block block = BLOCK.get();
+            int id = block.cursor.getAndIncrement();
+            if (id < block.end) return id;
+            synchronized (BLOCK) {
+                // Another thread already reserved the next block
+                if (BLOCK.get() != block) continue;
+                NMSHandler handler = NMSHandlers.getHandler();
+                int size = Math.max(1, blockSize);
+                int start = handler.reserveEntityIds(size);
+                // The version can't reserve blocks, fall back to asking for every id
+                if (start == -1) return handler.getNextEntityId();
+                BLOCK.set(new Block(start + 1, start + size));
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Gets an id that no other entity is using and records who it belongs to
+     * @param owner What the id belongs to, such as a plugin or a virtual entity
+     * @return The id
+     */
+    public static int allocate(@NotNull Object owner) {
+        int id = allocate();
+        OWNERS.put(id, owner);
+        return id;
+    }
+
+    /**
+     * Records who an already allocated id belongs to
+     * @param entityId The id
+     * @param owner What the id belongs to
+     */
+    public static void setOwner(int entityId, @NotNull Object owner) {
+        OWNERS.put(entityId, owner);
+    }
+
+    /**
+     * Gives back an id from {@link #allocate()} once the entity has been destroyed for everyone
+     * @param entityId The id
+     */
+    public static void release(int entityId) {
+        OWNERS.remove(entityId);
+        InteractionRouter.unregister(entityId);
+        synchronized (RELEASED) {
+            RELEASED.add(new Released(entityId, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Gets what an id was allocated for
+     * @param entityId The id
+     * @return The owner, or null if the id wasn't allocated with an owner
+     */
+    @Nullable
+    public static Object getOwner(int entityId) {
+        return OWNERS.get(entityId);
+    }
+
+    /**
+     * Whether an id was allocated with an owner and hasn't been released
+     * @param entityId The id
+     * @return true if the id has an owner
+     */
+    public static boolean isOwned(int entityId) {
+        return OWNERS.containsKey(entityId);
+    }
+
+    private static Integer pollReleased() {
+        synchronized (RELEASED) {
+            Released released = RELEASED.peek();
+            if (released == null || System.currentTimeMillis() - released.time < recycleDelay) return null;
+            RELEASED.poll();
+            return released.entityId;
+        }
+    }
+
+    private static class Block {
+
+        private final AtomicInteger cursor;
+        private final int end;
+
+        private Block(int start, int end) {
+            this.cursor = new AtomicInteger(start);
+            this.end = end;
+        }
+    }
+
+    private record Released(int entityId, long time) {
+    }
+}
@@ -0,0 +1,127 @@
+package me.lojosho.hibiscuscommons.util;
+
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds entities by id, remembering the entity each id was last found as so repeated lookups don't search every world.
+ * <p>
+ * Remembered entities are checked when they are used rather than on removal: an entity that died or changed world is
+ * looked up again, first in the world it was last in. Ids allocated by {@link EntityIdAllocator} with an owner are packet
+ * only entities and are never searched for.
+ */
+public class EntityLookup {
+
+    private static final ConcurrentHashMap<Integer, WeakReference<Entity>> CACHE = new ConcurrentHashMap<>();
+    // Past this many remembered ids, the ones whose entity has been unloaded are cleared out
+    private static final int PRUNE_THRESHOLD = 8192;
+    // Twice what was left after the last prune, so a cache full of live entities isn't scanned on every miss.
+    // Only used from the main thread.
+    private static int nextPrune = PRUNE_THRESHOLD;
+
+    /**
+     * Gets an entity by its id. Must be called from the main thread.
+     * @param entityId The entity's id
+     * @return The entity, or null if no world has an entity with that id
+     */
+    @Nullable
+    public static Entity getEntity(int entityId) {
+        if (EntityIdAllocator.isOwned(entityId)) return null;
+        NMSHandler handler = NMSHandlers.getHandler();
+
+        Entity cached = getCached(entityId);
+        if (cached != null) {
+            if (cached.isValid()) return cached;
+            // Check the world it was last in before searching all of them
+            World world = cached.getWorld();
+            Entity entity = handler.getEntity(world, entityId);
+            if (entity != null) return remember(entityId, entity);
+            CACHE.remove(entityId);
+        }
+
+        Entity entity = handler.getEntity(entityId);
+        return entity == null ? null : remember(entityId, entity);
+    }
+
+    /**
+     * Gets several entities by their ids, searching the worlds once for every id that isn't remembered.
+     * Must be called from the main thread.
+     * @param entityIds The ids
+     * @return The entities, in the same order as the ids, with null for any that weren't found
+     */
+    @NotNull
+    public static Entity[] getEntities(int... entityIds) {
+        Entity[] entities = new Entity[entityIds.length];
+        int missing = 0;
+        for (int i = 0; i < entityIds.length; i++) {
+            int entityId = entityIds[i];
+            if (EntityIdAllocator.isOwned(entityId)) continue;
+            Entity cached = getCached(entityId);
+            if (cached != null && cached.isValid()) entities[i] = cached;
+            else missing++;
+        }
+        if (missing == 0) return entities;
+
+        int[] missingIds = new int[missing];
+        int[] missingIndexes = new int[missing];
+        for (int i = 0, j = 0; i < entityIds.length; i++) {
+            if (entities[i] != null || EntityIdAllocator.isOwned(entityIds[i])) continue;
+            missingIds[j] = entityIds[i];
+            missingIndexes[j++] = i;
+        }
+        Entity[] found = NMSHandlers.getHandler().getEntities(missingIds);
+        for (int j = 0; j < missing; j++) {
+            if (found[j] == null) {
+                CACHE.remove(missingIds[j]);
+                continue;
+            }
+            entities[missingIndexes[j]] = remember(missingIds[j], found[j]);
+        }
+        return entities;
+    }
+
+    /**
+     * Gets the entity an id was last found as, without searching for it. Safe to call from any thread, such as a packet
+     * listener, but the entity may have been removed since and shouldn't be modified off the main thread.
+     * @param entityId The entity's id
+     * @return The entity, or null if the id hasn't been looked up or the entity is no longer valid
+     */
+    @Nullable
+    public static Entity getSnapshot(int entityId) {
+        Entity cached = getCached(entityId);
+        if (cached == null || !cached.isValid()) return null;
+        return cached;
+    }
+
+    /**
+     * Forgets every remembered entity
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static Entity getCached(int entityId) {
+        WeakReference<Entity> reference = CACHE.get(entityId);
+        return reference == null ? null : reference.get();
+    }
+
+    private static Entity remember(int entityId, Entity entity) {
+        if (Bukkit.isPrimaryThread() && CACHE.size() >= nextPrune) {
+            CACHE.values().removeIf(reference -> {
+                Entity value = reference.get();
+                return value == null || !value.isValid();
+            });
+            nextPrune = Math.max(PRUNE_THRESHOLD, CACHE.size() * 2);
+        }
+        CACHE.put(entityId, new WeakReference<>(entity));
+        return entity;
+    }
+}
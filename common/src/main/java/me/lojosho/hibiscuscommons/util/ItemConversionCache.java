@@ -0,0 +1,92 @@
+package me.lojosho.hibiscuscommons.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remembers what Bukkit items were converted to, so sending the same item again doesn't convert it again.
+ * <p>
+ * Conversions are looked up by the item's fingerprint, its type, amount and hash code, worked out once per lookup. A
+ * conversion is reused straight away for the item it was made from, so an item changed in place gets a new fingerprint
+ * and is converted again. Other items with the same fingerprint, such as a new stack built for every send, only reuse it
+ * if they're {@link ItemStack#isSimilar(ItemStack) similar} to, and as many as, a copy taken when it was converted. The
+ * least recently used conversions are dropped once the cache is full.
+ * <p>
+ * Every caller gets its own copy of the converted value, made with the copier given to the cache.
+ * @param <T> What items are converted to
+ */
+public class ItemConversionCache<T> {
+
+    private final Function<ItemStack, T> converter;
+    private final UnaryOperator<T> copier;
+    private final LinkedHashMap<Fingerprint, Conversion<T>> conversions;
+
+    /**
+     * @param maxSize How many conversions are kept
+     * @param converter Converts an item, also used for null items, which are never cached
+     * @param copier Copies a converted value, so callers can't change the one that's kept. Should cost far less than
+     *               converting the item again.
+     */
+    public ItemConversionCache(int maxSize, @NotNull Function<ItemStack, T> converter, @NotNull UnaryOperator<T> copier) {
+        this.converter = converter;
+        this.copier = copier;
+        this.conversions = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Fingerprint, Conversion<T>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets what an item converts to
+     * @param item The item
+     * @return A copy of the converted item
+     */
+    public T get(@Nullable ItemStack item) {
+        if (item == null) return converter.apply(null);
+        Fingerprint fingerprint = new Fingerprint(item.getType(), item.getAmount(), item.hashCode());
+        Conversion<T> conversion;
+        synchronized (conversions) {
+            conversion = conversions.get(fingerprint);
+        }
+        if (conversion != null) {
+            if (conversion.source == item) return copier.apply(conversion.value);
+            // Only a different item with the same fingerprint pays for the full comparison
+            if (conversion.snapshot.equals(item)) {
+                synchronized (conversions) {
+                    conversions.put(fingerprint, new Conversion<>(conversion.value, conversion.snapshot, item));
+                }
+                return copier.apply(conversion.value);
+            }
+        }
+        T value = converter.apply(item);
+        synchronized (conversions) {
+            conversions.put(fingerprint, new Conversion<>(value, item.clone(), item));
+        }
+        return copier.apply(value);
+    }
+
+    /**
+     * Forgets every conversion
+     */
+    public void clear() {
+        synchronized (conversions) {
+            conversions.clear();
+        }
+    }
+
+    private record Fingerprint(Material type, int amount, int hash) {
+    }
+
+    // The source is the last item the conversion was handed out for
+    private record Conversion<T>(T value, ItemStack snapshot, ItemStack source) {
+    }
+}
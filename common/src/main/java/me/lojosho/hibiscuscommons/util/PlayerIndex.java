@@ -0,0 +1,268 @@
+package me.lojosho.hibiscuscommons.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps every online player in a per-world grid of 16x16x16 sections, so finding the players around a point only
+ * looks at the sections that overlap the search area rather than at every entity in it.
+ * <p>
+ * The grid is updated from join, quit, move, teleport, world change and respawn events, and every tick for players
+ * riding something, as they don't fire move events. It's only used from the main thread.
+ * <p>
+ * Cube lookups count a player as inside if their bounding box overlaps the cube, like
+ * {@link World#getNearbyEntities(Location, double, double, double)}. Players scaled past the size of a standing player
+ * are only found by the part of their box that size covers.
+ */
+public class PlayerIndex implements Listener {
+
+    private static final HashMap<UUID, Long2ObjectOpenHashMap<List<Player>>> GRID = new HashMap<>();
+    private static final HashMap<Player, Section> SECTIONS = new HashMap<>();
+    // The half width and height of a standing player, how far past the cube a player's feet can be while their box overlaps it
+    private static final double HALF_WIDTH = 0.3;
+    private static final double HEIGHT = 1.8;
+    private static boolean setup = false;
+
+    // Reused to read player positions without allocating a location per player
+    private static final Location POSITION = new Location(null, 0, 0, 0);
+
+    /**
+     * Registers the listeners that keep the index updated and indexes everyone already online
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new PlayerIndex(), HibiscusCommonsPlugin.getInstance());
+        Bukkit.getScheduler().runTaskTimer(HibiscusCommonsPlugin.getInstance(), PlayerIndex::updatePassengers, 1L, 1L);
+        for (Player player : Bukkit.getOnlinePlayers()) update(player, player.getLocation());
+    }
+
+    /**
+     * Gets the players inside the cube centered on a location, the same area {@link World#getNearbyEntities(Location, double, double, double)} covers
+     * @param location The center of the cube
+     * @param distance Half the size of the cube
+     * @return The players inside the cube
+     */
+    @NotNull
+    public static List<Player> getPlayersInCube(@NotNull Location location, double distance) {
+        List<Player> players = new ArrayList<>();
+        collect(location, distance, false, players);
+        return players;
+    }
+
+    /**
+     * Adds the players inside the cube centered on a location to a collection
+     * @param location The center of the cube
+     * @param distance Half the size of the cube
+     * @param into The collection the players are added to
+     */
+    public static void getPlayersInCube(@NotNull Location location, double distance, @NotNull Collection<? super Player> into) {
+        collect(location, distance, false, into);
+    }
+
+    /**
+     * Gets the players within a distance of a location
+     * @param location The center of the sphere
+     * @param distance The radius of the sphere
+     * @return The players inside the sphere
+     */
+    @NotNull
+    public static List<Player> getPlayersInRadius(@NotNull Location location, double distance) {
+        List<Player> players = new ArrayList<>();
+        collect(location, distance, true, players);
+        return players;
+    }
+
+    /**
+     * Adds the players within a distance of a location to a collection
+     * @param location The center of the sphere
+     * @param distance The radius of the sphere
+     * @param into The collection the players are added to
+     */
+    public static void getPlayersInRadius(@NotNull Location location, double distance, @NotNull Collection<? super Player> into) {
+        collect(location, distance, true, into);
+    }
+
+    /**
+     * Adds every player in a world to a collection, without the copy {@link World#getPlayers()} makes
+     * @param world The world
+     * @param into The collection the players are added to
+     */
+    public static void getPlayersInWorld(@Nullable World world, @NotNull Collection<? super Player> into) {
+        if (world == null) return;
+        if (!setup) {
+            into.addAll(world.getPlayers());
+            return;
+        }
+        Long2ObjectOpenHashMap<List<Player>> sections = GRID.get(world.getUID());
+        if (sections == null) return;
+        for (List<Player> players : sections.values()) into.addAll(players);
+    }
+
+    private static void collect(Location location, double distance, boolean spherical, Collection<? super Player> into) {
+        World world = location.getWorld();
+        if (world == null) return;
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+
+        if (!setup) {
+            for (Player player : world.getPlayers()) {
+                if (isInside(player, x, y, z, distance, spherical)) into.add(player);
+            }
+            return;
+        }
+
+        Long2ObjectOpenHashMap<List<Player>> sections = GRID.get(world.getUID());
+        if (sections == null) return;
+
+        // A player's feet can be outside a cube their box overlaps
+        double horizontal = spherical ? distance : distance + HALF_WIDTH;
+        double below = spherical ? distance : distance + HEIGHT;
+        int minX = floor(x - horizontal) >> 4, maxX = floor(x + horizontal) >> 4;
+        int minY = floor(y - below) >> 4, maxY = floor(y + distance) >> 4;
+        int minZ = floor(z - horizontal) >> 4, maxZ = floor(z + horizontal) >> 4;
+        long sectionCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+        // For large areas it's cheaper to just check everyone in the world
+        if (sectionCount > sections.size()) {
+            for (List<Player> players : sections.values()) {
+                for (Player player : players) {
+                    if (isInside(player, x, y, z, distance, spherical)) into.add(player);
+                }
+            }
+            return;
+        }
+
+        for (int sectionX = minX; sectionX <= maxX; sectionX++) {
+            for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+                for (int sectionZ = minZ; sectionZ <= maxZ; sectionZ++) {
+                    List<Player> players = sections.get(key(sectionX, sectionY, sectionZ));
+                    if (players == null) continue;
+                    for (Player player : players) {
+                        if (isInside(player, x, y, z, distance, spherical)) into.add(player);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isInside(Player player, double x, double y, double z, double distance, boolean spherical) {
+        player.getLocation(POSITION);
+        double dx = POSITION.getX() - x;
+        double dy = POSITION.getY() - y;
+        double dz = POSITION.getZ() - z;
+        if (spherical) return dx * dx + dy * dy + dz * dz <= distance * distance;
+        double horizontal = distance + player.getWidth() / 2;
+        return Math.abs(dx) <= horizontal && Math.abs(dz) <= horizontal && dy <= distance && dy + player.getHeight() >= -distance;
+    }
+
+    // Covers mounts at any depth, and entities that aren't vehicles, none of which fire an event for their riders
+    private static void updatePassengers() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (player.isInsideVehicle()) update(player, player.getLocation(POSITION));
+        }
+    }
+
+    private static void update(Player player, Location location) {
+        World world = location.getWorld();
+        if (world == null) return;
+        UUID worldId = world.getUID();
+        long key = key(location.getBlockX() >> 4, location.getBlockY() >> 4, location.getBlockZ() >> 4);
+
+        Section current = SECTIONS.get(player);
+        if (current != null) {
+            if (current.key == key && current.world.equals(worldId)) return;
+            removeFromGrid(player, current);
+        }
+        Long2ObjectOpenHashMap<List<Player>> sections = GRID.computeIfAbsent(worldId, k -> new Long2ObjectOpenHashMap<>());
+        List<Player> players = sections.get(key);
+        if (players == null) {
+            players = new ArrayList<>(4);
+            sections.put(key, players);
+        }
+        players.add(player);
+        SECTIONS.put(player, new Section(worldId, key));
+    }
+
+    private static void remove(Player player) {
+        Section section = SECTIONS.remove(player);
+        if (section != null) removeFromGrid(player, section);
+    }
+
+    private static void removeFromGrid(Player player, Section section) {
+        Long2ObjectOpenHashMap<List<Player>> sections = GRID.get(section.world);
+        if (sections == null) return;
+        List<Player> players = sections.get(section.key);
+        if (players == null) return;
+        players.remove(player);
+        if (players.isEmpty()) sections.remove(section.key);
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) x & 0x3FFFFF) << 42 | ((long) y & 0xFFFFF) | ((long) z & 0x3FFFFF) << 20;
+    }
+
+    private static int floor(double value) {
+        int floor = (int) value;
+        return value < floor ? floor - 1 : floor;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        remove(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location to = event.getTo();
+        if (to == null) return;
+        Location from = event.getFrom();
+        // Most moves stay inside the same section
+        if (from.getWorld() == to.getWorld()
+                && from.getBlockX() >> 4 == to.getBlockX() >> 4
+                && from.getBlockY() >> 4 == to.getBlockY() >> 4
+                && from.getBlockZ() >> 4 == to.getBlockZ() >> 4) return;
+        update(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (event.getTo() == null) return;
+        update(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangeWorld(PlayerChangedWorldEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    private record Section(UUID world, long key) {
+    }
+}
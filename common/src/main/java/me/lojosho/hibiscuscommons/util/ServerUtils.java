@@ -2,8 +2,8 @@ package me.lojosho.hibiscuscommons.util;
 
 import com.comphenix.protocol.wrappers.WrappedGameProfile;
 import com.comphenix.protocol.wrappers.WrappedSignedProperty;
-import me.lojosho.hibiscuscommons.nms.NMSHandlers;
 import org.bukkit.Color;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
@@ -12,7 +12,37 @@ import java.util.Arrays;
 public class ServerUtils {
 
     public static int getNextEntityId() {
-        return NMSHandlers.getHandler().getNextEntityId();
+        return EntityIdAllocator.allocate();
+    }
+
+    /**
+     * Gets an entity by its id, remembering where it was found for later lookups
+     * @param entityId The entity's id
+     * @return The entity, or null if there is no entity with that id
+     * @see EntityLookup
+     */
+    @Nullable
+    public static Entity getEntity(int entityId) {
+        return EntityLookup.getEntity(entityId);
+    }
+
+    /**
+     * Gets several entities by their ids in one pass over the worlds
+     * @param entityIds The ids
+     * @return The entities, in the same order as the ids, with null for any that weren't found
+     */
+    public static Entity[] getEntities(int... entityIds) {
+        return EntityLookup.getEntities(entityIds);
+    }
+
+    /**
+     * Gets the entity an id was last found as, safe to call off the main thread
+     * @param entityId The entity's id
+     * @return The entity, or null if it hasn't been looked up or is no longer valid
+     */
+    @Nullable
+    public static Entity getEntitySnapshot(int entityId) {
+        return EntityLookup.getSnapshot(entityId);
     }
 
     @Nullable
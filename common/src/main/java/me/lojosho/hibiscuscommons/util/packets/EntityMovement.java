@@ -0,0 +1,156 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Remembers the last position sent for each packet entity, so moves of less than 8 blocks can be sent as relative
+ * moves instead of full teleports. Viewers that haven't been sent the last position, such as ones that just had the
+ * entity spawned for them, are sent a teleport instead. Players are forgotten as viewers when they quit.
+ * <p>
+ * Only used from the main thread.
+ */
+public class EntityMovement implements Listener {
+
+    private static final Int2ObjectOpenHashMap<TrackedEntity> TRACKED = new Int2ObjectOpenHashMap<>();
+    /**
+     * How many moves can be sent as relative moves before a full teleport is sent to correct any drift
+     */
+    @Getter @Setter
+    private static int teleportInterval = 60;
+    private static boolean setup = false;
+
+    /**
+     * Registers the listener that forgets players when they quit
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new EntityMovement(), HibiscusCommonsPlugin.getInstance());
+    }
+
+    /**
+     * Moves an entity for the viewers, sending relative moves where possible
+     * @param entityId The entity to move
+     * @param location Where the entity is now
+     * @param onGround If the entity is on the ground
+     * @param sendTo The viewers of the entity
+     */
+    public static void move(int entityId, @NotNull Location location, boolean onGround, @NotNull Collection<? extends Player> sendTo) {
+        long x = quantize(location.getX());
+        long y = quantize(location.getY());
+        long z = quantize(location.getZ());
+        byte yaw = PacketManager.toAngle(location.getYaw());
+        byte pitch = PacketManager.toAngle(location.getPitch());
+
+        TrackedEntity tracked = TRACKED.get(entityId);
+        if (tracked == null) {
+            tracked = new TrackedEntity();
+            TRACKED.put(entityId, tracked);
+        }
+
+        long deltaX = x - tracked.x;
+        long deltaY = y - tracked.y;
+        long deltaZ = z - tracked.z;
+        boolean relative = !tracked.viewers.isEmpty()
+                && tracked.moves < teleportInterval
+                && fitsInShort(deltaX) && fitsInShort(deltaY) && fitsInShort(deltaZ);
+
+        List<Player> teleportTo = new ArrayList<>();
+        List<Player> moveTo = new ArrayList<>();
+        Set<UUID> viewers = new HashSet<>();
+        for (Player player : sendTo) {
+            UUID uuid = player.getUniqueId();
+            viewers.add(uuid);
+            if (relative && tracked.viewers.contains(uuid)) moveTo.add(player);
+            else teleportTo.add(player);
+        }
+
+        if (!moveTo.isEmpty()) {
+            boolean rotated = yaw != tracked.yaw || pitch != tracked.pitch;
+            if (rotated) {
+                PacketManager.sendRelativeMoveLookPacket(entityId, (short) deltaX, (short) deltaY, (short) deltaZ, yaw, pitch, onGround, moveTo);
+            } else if (deltaX != 0 || deltaY != 0 || deltaZ != 0) {
+                PacketManager.sendRelativeMovePacket(entityId, (short) deltaX, (short) deltaY, (short) deltaZ, onGround, moveTo);
+            }
+        }
+        if (!teleportTo.isEmpty()) PacketManager.teleport(entityId, location, onGround, teleportTo);
+
+        // Anyone who wasn't sent this move no longer knows where the entity is
+        tracked.viewers = viewers;
+        tracked.moves = relative ? tracked.moves + 1 : 0;
+        // The client adds up the deltas it's sent, so keep the position it ends up with rather than the real one
+        if (relative) {
+            tracked.x += deltaX;
+            tracked.y += deltaY;
+            tracked.z += deltaZ;
+        } else {
+            tracked.x = x;
+            tracked.y = y;
+            tracked.z = z;
+        }
+        tracked.yaw = yaw;
+        tracked.pitch = pitch;
+    }
+
+    /**
+     * Forgets the position the viewers were sent, so the next move they get is a teleport. Called when an entity is spawned or destroyed for them.
+     * @param entityId The entity
+     * @param viewers The viewers to forget
+     */
+    public static void reset(int entityId, @NotNull Collection<? extends Player> viewers) {
+        TrackedEntity tracked = TRACKED.get(entityId);
+        if (tracked == null) return;
+        for (Player player : viewers) tracked.viewers.remove(player.getUniqueId());
+        if (tracked.viewers.isEmpty()) TRACKED.remove(entityId);
+    }
+
+    /**
+     * Forgets everything about an entity
+     * @param entityId The entity
+     */
+    public static void forget(int entityId) {
+        TRACKED.remove(entityId);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        TRACKED.values().removeIf(tracked -> tracked.viewers.remove(uuid) && tracked.viewers.isEmpty());
+    }
+
+    private static long quantize(double coordinate) {
+        return Math.round(coordinate * 4096.0D);
+    }
+
+    private static boolean fitsInShort(long delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    private static class TrackedEntity {
+        private long x;
+        private long y;
+        private long z;
+        private byte yaw;
+        private byte pitch;
+        private int moves;
+        private Set<UUID> viewers = new HashSet<>();
+    }
+}
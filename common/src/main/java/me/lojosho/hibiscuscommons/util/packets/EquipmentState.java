@@ -0,0 +1,169 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the equipment each viewer was last sent for each entity, so {@link PacketManager#equipmentSlotUpdate}
+ * only sends the slots that changed for them, and nothing if none did.
+ * <p>
+ * Each item's fingerprint, its type, amount and hash code, is worked out once per update and compared with the one
+ * each viewer was last sent, so items changed in place are noticed too.
+ * <p>
+ * What a viewer has is forgotten when the entity is spawned or destroyed for them through {@link PacketManager}, and
+ * when they quit, respawn or change world. Anything that resets equipment another way, such as the server resending a
+ * real entity's equipment when it comes back into view, has to call {@link #reset(int, Collection)}, so this is off by default.
+ */
+public class EquipmentState implements Listener {
+
+    // Fingerprints of what each viewer was sent
+    private static final HashMap<Player, Int2ObjectOpenHashMap<EnumMap<EquipmentSlot, Long>>> SENT = new HashMap<>();
+    @Getter @Setter
+    private static boolean enabled = false;
+    private static boolean setup = false;
+
+    /**
+     * Registers the listeners that forget what players were sent
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new EquipmentState(), HibiscusCommonsPlugin.getInstance());
+    }
+
+    /**
+     * Works out which slots each viewer needs and groups viewers that need the same slots
+     * @param entityId The entity
+     * @param equipment The entity's equipment
+     * @param sendTo The viewers
+     * @return The slots to send and the viewers that need them
+     */
+    static List<Update> diff(int entityId, Map<EquipmentSlot, ItemStack> equipment, Collection<? extends Player> sendTo) {
+        EquipmentSlot[] slots = equipment.keySet().toArray(new EquipmentSlot[0]);
+        ItemStack[] items = new ItemStack[slots.length];
+        long[] fingerprints = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            items[i] = equipment.get(slots[i]);
+            fingerprints[i] = fingerprint(items[i]);
+        }
+
+        // Viewers grouped by the bits of the slots that changed for them
+        Int2ObjectOpenHashMap<List<Player>> byChanges = new Int2ObjectOpenHashMap<>();
+        synchronized (SENT) {
+            for (Player player : sendTo) {
+                if (player == null) continue;
+                Int2ObjectOpenHashMap<EnumMap<EquipmentSlot, Long>> entities = SENT.get(player);
+                if (entities == null) {
+                    entities = new Int2ObjectOpenHashMap<>();
+                    SENT.put(player, entities);
+                }
+                EnumMap<EquipmentSlot, Long> sent = entities.get(entityId);
+                if (sent == null) {
+                    sent = new EnumMap<>(EquipmentSlot.class);
+                    entities.put(entityId, sent);
+                }
+
+                int changes = 0;
+                for (int i = 0; i < slots.length; i++) {
+                    Long previous = sent.get(slots[i]);
+                    if (previous != null && previous == fingerprints[i]) continue;
+                    sent.put(slots[i], fingerprints[i]);
+                    changes |= 1 << i;
+                }
+                if (changes == 0) continue;
+                List<Player> viewers = byChanges.get(changes);
+                if (viewers == null) {
+                    viewers = new ArrayList<>();
+                    byChanges.put(changes, viewers);
+                }
+                viewers.add(player);
+            }
+        }
+
+        List<Update> updates = new ArrayList<>(byChanges.size());
+        for (Int2ObjectMap.Entry<List<Player>> entry : byChanges.int2ObjectEntrySet()) {
+            int changes = entry.getIntKey();
+            HashMap<EquipmentSlot, ItemStack> changed = new HashMap<>();
+            for (int i = 0; i < slots.length; i++) {
+                if ((changes & (1 << i)) != 0) changed.put(slots[i], items[i]);
+            }
+            updates.add(new Update(changed, entry.getValue()));
+        }
+        return updates;
+    }
+
+    /**
+     * Forgets the equipment viewers were sent for an entity, so the next update sends every slot
+     * @param entityId The entity
+     * @param viewers The viewers
+     */
+    public static void reset(int entityId, @NotNull Collection<? extends Player> viewers) {
+        synchronized (SENT) {
+            if (SENT.isEmpty()) return;
+            for (Player player : viewers) {
+                Int2ObjectOpenHashMap<EnumMap<EquipmentSlot, Long>> entities = SENT.get(player);
+                if (entities != null) entities.remove(entityId);
+            }
+        }
+    }
+
+    /**
+     * Forgets everything a viewer was sent
+     * @param player The viewer
+     */
+    public static void reset(@NotNull Player player) {
+        synchronized (SENT) {
+            SENT.remove(player);
+        }
+    }
+
+    // The hash code in the high bits, the type and amount in the low ones, 0 for no item
+    private static long fingerprint(ItemStack item) {
+        if (item == null) return 0;
+        return ((long) item.hashCode() << 32) | ((long) item.getType().ordinal() << 16) | (item.getAmount() & 0xFFFF);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangeWorld(PlayerChangedWorldEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        reset(event.getPlayer());
+    }
+
+    /**
+     * Equipment to send to some viewers
+     * @param equipment The slots that changed for the viewers
+     * @param viewers The viewers
+     */
+    record Update(HashMap<EquipmentSlot, ItemStack> equipment, List<Player> viewers) {
+    }
+}
@@ -0,0 +1,118 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hides NPC nametags by adding the NPCs to a single hidden nametag team per player, rather than a team per NPC.
+ * <p>
+ * The names each player's team already holds are remembered, so only names the player doesn't have yet are sent, all
+ * in one packet. The first time a player needs the team, it's created with its members in a single packet. What a
+ * player has is forgotten when they quit, so their client gets the team again when they rejoin.
+ */
+public class HiddenNameTeams implements Listener {
+
+    /**
+     * The name of the team sent to players
+     */
+    public static final String TEAM_NAME = "hibiscus_hidden";
+    private static final HashMap<UUID, Set<String>> MEMBERS = new HashMap<>();
+    private static boolean setup = false;
+
+    /**
+     * Registers the listener that forgets the team of players that quit
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new HiddenNameTeams(), HibiscusCommonsPlugin.getInstance());
+    }
+
+    /**
+     * Hides the nametag of an NPC for a player
+     * @param player The player
+     * @param name The NPC's name
+     */
+    public static void hide(@NotNull Player player, @NotNull String name) {
+        hide(player, List.of(name));
+    }
+
+    /**
+     * Hides the nametags of NPCs for a player, sending only the names the player's team doesn't already have
+     * @param player The player
+     * @param names The NPCs' names
+     */
+    public static void hide(@NotNull Player player, @NotNull Collection<String> names) {
+        NMSHandler handler = NMSHandlers.getHandler();
+        List<Object> packets = new ArrayList<>(2);
+        synchronized (MEMBERS) {
+            Set<String> members = MEMBERS.get(player.getUniqueId());
+            if (members == null) {
+                members = new HashSet<>(names);
+                MEMBERS.put(player.getUniqueId(), members);
+                // The client may still have the team from before a reload, so it's cleared first
+                packets.add(handler.createRemoveTeamPacket(TEAM_NAME));
+                packets.add(handler.createHiddenNameTeamPacket(TEAM_NAME, members));
+            } else {
+                List<String> missing = new ArrayList<>();
+                for (String name : names) {
+                    if (members.add(name)) missing.add(name);
+                }
+                if (missing.isEmpty()) return;
+                packets.add(handler.createTeamMembersPacket(TEAM_NAME, missing, true));
+            }
+        }
+        for (Object packet : packets) PacketManager.sendNMSPacket(player, packet);
+    }
+
+    /**
+     * Shows the nametag of an NPC that was hidden for a player again
+     * @param player The player
+     * @param name The NPC's name
+     */
+    public static void show(@NotNull Player player, @NotNull String name) {
+        Object packet;
+        synchronized (MEMBERS) {
+            Set<String> members = MEMBERS.get(player.getUniqueId());
+            if (members == null || !members.remove(name)) return;
+            packet = NMSHandlers.getHandler().createTeamMembersPacket(TEAM_NAME, List.of(name), false);
+        }
+        PacketManager.sendNMSPacket(player, packet);
+    }
+
+    /**
+     * Whether an NPC's nametag has been hidden for a player
+     * @param player The player
+     * @param name The NPC's name
+     * @return true if the name is in the player's hidden team
+     */
+    public static boolean isHidden(@NotNull Player player, @NotNull String name) {
+        synchronized (MEMBERS) {
+            Set<String> members = MEMBERS.get(player.getUniqueId());
+            return members != null && members.contains(name);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        synchronized (MEMBERS) {
+            MEMBERS.remove(event.getPlayer().getUniqueId());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.events.ListenerPriority;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.wrappers.EnumWrappers;
+import com.comphenix.protocol.wrappers.WrappedEnumEntityUseAction;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EquipmentSlot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.logging.Level;
+
+/**
+ * Routes clicks on packet only entities to whoever registered them. A single ProtocolLib listener looks up the clicked
+ * entity id and hands the interaction to its handler, instead of every plugin listening for the packet and searching
+ * its own entities.
+ * <p>
+ * Interactions with a registered entity are cancelled, the server doesn't know the entity and has nothing to do with them.
+ * Handlers are removed when their {@link VirtualEntity} is removed or their id is released back to the
+ * {@link me.lojosho.hibiscuscommons.util.EntityIdAllocator}.
+ */
+public class InteractionRouter {
+
+    private static final Int2ObjectMap<Registration> HANDLERS = Int2ObjectMaps.synchronize(new Int2ObjectOpenHashMap<>());
+    private static boolean listening = false;
+
+    /**
+     * Routes interactions with an entity to a handler on the next tick
+     * @param entityId The id of the packet only entity
+     * @param handler What to call when a player interacts with the entity
+     */
+    public static void register(int entityId, @NotNull InteractionHandler handler) {
+        register(entityId, handler, HandlerThread.MAIN);
+    }
+
+    /**
+     * Routes interactions with an entity to a handler, replacing any handler it already had
+     * @param entityId The id of the packet only entity
+     * @param handler What to call when a player interacts with the entity
+     * @param thread Where the handler is called
+     */
+    public static void register(int entityId, @NotNull InteractionHandler handler, @NotNull HandlerThread thread) {
+        HANDLERS.put(entityId, new Registration(handler, thread));
+        listen();
+    }
+
+    /**
+     * Routes interactions with a virtual entity to a handler until the entity is removed
+     * @param entity The virtual entity
+     * @param handler What to call when a player interacts with the entity
+     * @param thread Where the handler is called
+     */
+    public static void register(@NotNull VirtualEntity entity, @NotNull InteractionHandler handler, @NotNull HandlerThread thread) {
+        register(entity.getEntityId(), handler, thread);
+    }
+
+    /**
+     * Stops routing interactions with an entity
+     * @param entityId The id of the entity
+     */
+    public static void unregister(int entityId) {
+        HANDLERS.remove(entityId);
+    }
+
+    /**
+     * Whether interactions with an entity are being routed
+     * @param entityId The id of the entity
+     * @return true if the entity has a handler
+     */
+    public static boolean isRegistered(int entityId) {
+        return HANDLERS.containsKey(entityId);
+    }
+
+    private static synchronized void listen() {
+        if (listening) return;
+        listening = true;
+        ProtocolLibrary.getProtocolManager().addPacketListener(new PacketAdapter(HibiscusCommonsPlugin.getInstance(), ListenerPriority.NORMAL, PacketType.Play.Client.USE_ENTITY) {
+            @Override
+            public void onPacketReceiving(PacketEvent event) {
+                route(event);
+            }
+        });
+    }
+
+    private static void route(PacketEvent event) {
+        PacketContainer packet = event.getPacket();
+        int entityId = packet.getIntegers().read(0);
+        Registration registration = HANDLERS.get(entityId);
+        if (registration == null) return;
+        event.setCancelled(true);
+
+        WrappedEnumEntityUseAction useAction = packet.getEnumEntityUseActions().read(0);
+        Action action = switch (useAction.getAction()) {
+            case ATTACK -> Action.ATTACK;
+            case INTERACT -> Action.INTERACT;
+            case INTERACT_AT -> Action.INTERACT_AT;
+        };
+        // Attacks don't say which hand was used
+        EquipmentSlot hand = null;
+        if (action != Action.ATTACK) {
+            hand = useAction.getHand() == EnumWrappers.Hand.OFF_HAND ? EquipmentSlot.OFF_HAND : EquipmentSlot.HAND;
+        }
+        Interaction interaction = new Interaction(event.getPlayer(), entityId, action, hand, packet.getBooleans().readSafely(0) == Boolean.TRUE);
+
+        if (registration.thread == HandlerThread.NETTY) {
+            handle(registration.handler, interaction);
+            return;
+        }
+        Bukkit.getScheduler().runTask(HibiscusCommonsPlugin.getInstance(), () -> {
+            // The entity may have been removed or the player may have left in the meantime
+            if (HANDLERS.get(entityId) != registration || !interaction.player().isOnline()) return;
+            handle(registration.handler, interaction);
+        });
+    }
+
+    private static void handle(InteractionHandler handler, Interaction interaction) {
+        try {
+            handler.onInteract(interaction);
+        } catch (Exception e) {
+            HibiscusCommonsPlugin.getInstance().getLogger().log(Level.SEVERE, "Unable to handle an interaction with entity " + interaction.entityId(), e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface InteractionHandler {
+        void onInteract(@NotNull Interaction interaction);
+    }
+
+    /**
+     * A player clicking a packet only entity
+     * @param player The player that clicked
+     * @param entityId The entity that was clicked
+     * @param action How it was clicked
+     * @param hand The hand used, null for attacks
+     * @param sneaking Whether the player was sneaking
+     */
+    public record Interaction(@NotNull Player player, int entityId, @NotNull Action action, @Nullable EquipmentSlot hand, boolean sneaking) {
+    }
+
+    public enum Action {
+        ATTACK,
+        INTERACT,
+        INTERACT_AT
+    }
+
+    public enum HandlerThread {
+        /**
+         * Called straight away on the player's network thread. The handler must not touch the world.
+         */
+        NETTY,
+        /**
+         * Called on the main thread on the next tick
+         */
+        MAIN
+    }
+
+    private record Registration(InteractionHandler handler, HandlerThread thread) {
+    }
+}
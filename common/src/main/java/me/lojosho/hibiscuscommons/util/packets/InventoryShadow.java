@@ -0,0 +1,164 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.*;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which items each player was shown in their inventory through {@link PacketManager#slotUpdate(Player, Map)},
+ * so only the slots that changed are sent again. Once enough slots change at once, the whole inventory is resent in
+ * one packet instead.
+ * <p>
+ * Items are compared the same way {@link EquipmentState} compares them. What a player was shown is forgotten whenever
+ * the server is likely to have resent their real items: when they click, drag, pick up, drop or swap items, close an
+ * inventory, quit, respawn or change world. Anything else that resends real items has to call {@link #reset(Player)}.
+ */
+public class InventoryShadow implements Listener {
+
+    // Copies of what each player was shown
+    private static final HashMap<Player, Int2ObjectOpenHashMap<ItemStack>> SHOWN = new HashMap<>();
+    /**
+     * How many slots have to change at once for the whole inventory to be resent instead
+     */
+    @Getter @Setter
+    private static int contentThreshold = 6;
+    private static boolean setup = false;
+
+    /**
+     * Registers the listeners that forget what players were shown
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new InventoryShadow(), HibiscusCommonsPlugin.getInstance());
+    }
+
+    /**
+     * Records the items a player is being shown and works out which of them they don't have yet
+     * @param player The player
+     * @param items The items, by inventory slot
+     * @return The items that changed, by inventory slot
+     */
+    static Map<Integer, ItemStack> diff(Player player, Map<Integer, ItemStack> items) {
+        HashMap<Integer, ItemStack> changed = new HashMap<>();
+        synchronized (SHOWN) {
+            Int2ObjectOpenHashMap<ItemStack> shown = SHOWN.get(player);
+            if (shown == null) {
+                shown = new Int2ObjectOpenHashMap<>();
+                SHOWN.put(player, shown);
+            }
+            for (Map.Entry<Integer, ItemStack> entry : items.entrySet()) {
+                int slot = entry.getKey();
+                ItemStack item = entry.getValue();
+                if (shown.containsKey(slot) && isSame(shown.get(slot), item)) continue;
+                shown.put(slot, item == null ? null : item.clone());
+                changed.put(slot, item);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gets every item a player is currently being shown in place of their real ones
+     * @param player The player
+     * @return The items, by inventory slot
+     */
+    static Map<Integer, ItemStack> getShown(Player player) {
+        HashMap<Integer, ItemStack> items = new HashMap<>();
+        synchronized (SHOWN) {
+            Int2ObjectOpenHashMap<ItemStack> shown = SHOWN.get(player);
+            if (shown == null) return items;
+            for (Int2ObjectMap.Entry<ItemStack> entry : shown.int2ObjectEntrySet()) items.put(entry.getIntKey(), entry.getValue());
+        }
+        return items;
+    }
+
+    /**
+     * Forgets what a player was shown in one slot, such as after their real item was sent for it
+     * @param player The player
+     * @param slot The inventory slot
+     */
+    public static void reset(@NotNull Player player, int slot) {
+        synchronized (SHOWN) {
+            Int2ObjectOpenHashMap<ItemStack> shown = SHOWN.get(player);
+            if (shown != null) shown.remove(slot);
+        }
+    }
+
+    /**
+     * Forgets everything a player was shown, so the next update sends every slot
+     * @param player The player
+     */
+    public static void reset(@NotNull Player player) {
+        synchronized (SHOWN) {
+            SHOWN.remove(player);
+        }
+    }
+
+    // ItemStack#equals is similarity and amount
+    private static boolean isSame(ItemStack shown, ItemStack item) {
+        return shown == null ? item == null : shown.equals(item);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getWhoClicked() instanceof Player player) reset(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (event.getWhoClicked() instanceof Player player) reset(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getPlayer() instanceof Player player) reset(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        if (event.getEntity() instanceof Player player) reset(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDrop(PlayerDropItemEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangeWorld(PlayerChangedWorldEvent event) {
+        reset(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        reset(event.getPlayer());
+    }
+}
@@ -0,0 +1,162 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues outgoing packets per player while enabled and sends everything a player was queued in a tick as a single
+ * bundle, so the client applies them together and the connection is only flushed once.
+ * <p>
+ * On Paper the queue is sent when the tick ends. Elsewhere it's sent from a task at the start of the next tick, which
+ * delays every queued packet by up to a tick, so batching is off by default.
+ * <p>
+ * While coalescing, a {@link PacketKind#isCoalescible() coalescible} packet replaces any packet of the same kind queued
+ * earlier in the tick for the same entity. The newer packet keeps its own place in the queue and every other packet
+ * (spawns, mounts, destroys...) is left untouched, so the state the client ends up with is the same.
+ */
+public class PacketBatch {
+
+    private static final HashMap<Player, PlayerQueue> QUEUED = new HashMap<>();
+    private static final String TICK_END_EVENT = "com.destroystokyo.paper.event.server.ServerTickEndEvent";
+    private static final Listener TICK_END_LISTENER = new Listener() {};
+    @Getter
+    private static boolean enabled = false;
+    @Getter @Setter
+    private static boolean coalescing = true;
+    private static BukkitTask task;
+
+    /**
+     * Enables or disables tick batching. Disabling sends anything that is still queued.
+     * @param enabled true to queue packets until the end of the tick, or the start of the next one when not on Paper,
+     *                false to send them straight away
+     */
+    public static void setEnabled(boolean enabled) {
+        if (PacketBatch.enabled == enabled) return;
+        PacketBatch.enabled = enabled;
+        if (enabled) {
+            if (!listenForTickEnd()) task = Bukkit.getScheduler().runTaskTimer(HibiscusCommonsPlugin.getInstance(), PacketBatch::flush, 1L, 1L);
+        } else {
+            HandlerList.unregisterAll(TICK_END_LISTENER);
+            if (task != null) task.cancel();
+            task = null;
+            flush();
+        }
+    }
+
+    // Paper's tick end event is only looked up at runtime, as it isn't part of the Bukkit API
+    private static boolean listenForTickEnd() {
+        Class<? extends Event> event;
+        try {
+            event = Class.forName(TICK_END_EVENT).asSubclass(Event.class);
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        Bukkit.getPluginManager().registerEvent(event, TICK_END_LISTENER, EventPriority.MONITOR, (listener, called) -> flush(), HibiscusCommonsPlugin.getInstance());
+        return true;
+    }
+
+    /**
+     * Whether packets sent right now would be queued. Packets sent off the main thread or while
+     * {@link PacketManager#isAsyncDispatch() async dispatch} is on are never queued.
+     * @return true if batching is enabled and this is the main thread
+     */
+    public static boolean isBatching() {
+        return enabled && !PacketManager.isAsyncDispatch() && Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Queues a packet for a player until the end of the tick
+     * @param player The player the packet is for
+     * @param packet The NMS packet
+     * @return true if the packet was queued, false if it should be sent right away
+     */
+    public static boolean queue(@NotNull Player player, @NotNull Object packet) {
+        return queue(player, packet, PacketKind.OTHER, -1);
+    }
+
+    /**
+     * Queues a packet for a player until the end of the tick, dropping anything it supersedes
+     * @param player The player the packet is for
+     * @param packet The NMS packet
+     * @param kind The kind of packet
+     * @param entityId The entity the packet is about, or -1 if it isn't about a single entity
+     * @return true if the packet was queued, false if it should be sent right away
+     */
+    public static boolean queue(@NotNull Player player, @NotNull Object packet, @NotNull PacketKind kind, int entityId) {
+        if (!isBatching()) return false;
+        QUEUED.computeIfAbsent(player, k -> new PlayerQueue()).add(packet, kind, entityId);
+        return true;
+    }
+
+    /**
+     * Sends everything that has been queued, one bundle per player
+     */
+    public static void flush() {
+        if (QUEUED.isEmpty()) return;
+        for (Map.Entry<Player, PlayerQueue> entry : QUEUED.entrySet()) {
+            Player player = entry.getKey();
+            if (!player.isOnline()) continue;
+            NMSHandlers.getHandler().sendBundledPackets(player, entry.getValue().drain());
+        }
+        QUEUED.clear();
+    }
+
+    /**
+     * Sends everything queued for a single player
+     * @param player The player to flush
+     */
+    public static void flush(@NotNull Player player) {
+        PlayerQueue queue = QUEUED.remove(player);
+        if (queue == null || !player.isOnline()) return;
+        NMSHandlers.getHandler().sendBundledPackets(player, queue.drain());
+    }
+
+    private static class PlayerQueue {
+
+        private final List<Object> packets = new ArrayList<>();
+        // (entity id, kind) -> index of the latest coalescible packet queued for it
+        private final Long2IntOpenHashMap latest = new Long2IntOpenHashMap();
+        private int superseded = 0;
+
+        private PlayerQueue() {
+            latest.defaultReturnValue(-1);
+        }
+
+        private void add(Object packet, PacketKind kind, int entityId) {
+            if (coalescing && kind.isCoalescible() && entityId != -1) {
+                long key = ((long) entityId << 8) | kind.ordinal();
+                int previous = latest.put(key, packets.size());
+                if (previous != -1) {
+                    packets.set(previous, null);
+                    superseded++;
+                }
+            }
+            packets.add(packet);
+        }
+
+        private List<Object> drain() {
+            if (superseded == 0) return packets;
+            List<Object> remaining = new ArrayList<>(packets.size() - superseded);
+            for (Object packet : packets) {
+                if (packet != null) remaining.add(packet);
+            }
+            return remaining;
+        }
+    }
+}
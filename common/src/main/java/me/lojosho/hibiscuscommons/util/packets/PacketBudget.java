@@ -0,0 +1,193 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Limits how many packets each player is sent per tick and holds packets back while their connection isn't writable,
+ * so slow clients don't build up large outbound buffers on the server. What happens to a packet depends on its
+ * {@link PacketKind.Priority priority}.
+ * <p>
+ * Held back packets are sent in order on later ticks. Once anything is held back for a player, every later packet
+ * that can't be dropped waits behind it, so the order the player receives packets in never changes. A held back packet
+ * that a newer one of the same kind for the same entity replaces is dropped. A critical packet first sends, or for a
+ * destroy discards, whatever is held back for the same entity.
+ * <p>
+ * Only packets sent from the main thread go through the budget, so packets sent with
+ * {@link PacketManager#isAsyncDispatch() async dispatch} skip it.
+ */
+public class PacketBudget {
+
+    private static final HashMap<Player, PlayerBudget> BUDGETS = new HashMap<>();
+    @Getter
+    private static boolean enabled = false;
+    /**
+     * How many packets a player can be sent per tick, 0 or less for no limit
+     */
+    @Getter @Setter
+    private static int packetsPerTick = 0;
+    /**
+     * How many packets can be held back for a player. Past this, every packet held back sends the oldest one.
+     */
+    @Getter @Setter
+    private static int maxDeferred = 2048;
+    private static BukkitTask task;
+
+    /**
+     * Enables or disables the budget. Disabling sends anything that is held back.
+     * @param enabled true to limit what players are sent
+     */
+    public static void setEnabled(boolean enabled) {
+        if (PacketBudget.enabled == enabled) return;
+        PacketBudget.enabled = enabled;
+        if (enabled) {
+            task = Bukkit.getScheduler().runTaskTimer(HibiscusCommonsPlugin.getInstance(), PacketBudget::tick, 1L, 1L);
+        } else {
+            if (task != null) task.cancel();
+            task = null;
+            for (Map.Entry<Player, PlayerBudget> entry : BUDGETS.entrySet()) entry.getValue().release(entry.getKey(), true);
+            BUDGETS.clear();
+        }
+    }
+
+    /**
+     * Whether packets sent right now go through the budget
+     * @return true if the budget is enabled and this is the main thread
+     */
+    public static boolean isActive() {
+        return enabled && Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Offers a packet to a player's budget
+     * @param player The player the packet is for
+     * @param packet The NMS packet or ProtocolLib container
+     * @param kind The kind of packet
+     * @param entityId The entity the packet is about, or -1 if it isn't about a single entity
+     * @return true if the budget held back or dropped the packet, false if it should be sent now
+     */
+    static boolean offer(@NotNull Player player, @NotNull Object packet, @NotNull PacketKind kind, int entityId) {
+        if (!isActive()) return false;
+        PlayerBudget budget = BUDGETS.computeIfAbsent(player, k -> new PlayerBudget());
+        return budget.offer(player, packet, kind, entityId);
+    }
+
+    /**
+     * Drops everything held back for an entity, as it's about to be destroyed for the players
+     * @param entityId The entity
+     * @param players The players it's being destroyed for
+     */
+    static void discard(int entityId, @NotNull Collection<? extends Player> players) {
+        if (!isActive() || BUDGETS.isEmpty()) return;
+        for (Player player : players) {
+            PlayerBudget budget = BUDGETS.get(player);
+            if (budget != null) budget.deferred.removeIf(packet -> packet.entityId == entityId);
+        }
+    }
+
+    private static void tick() {
+        Iterator<Map.Entry<Player, PlayerBudget>> iterator = BUDGETS.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Player, PlayerBudget> entry = iterator.next();
+            Player player = entry.getKey();
+            PlayerBudget budget = entry.getValue();
+            if (!player.isOnline()) {
+                iterator.remove();
+                continue;
+            }
+            budget.sent = 0;
+            budget.release(player, false);
+            if (budget.deferred.isEmpty()) iterator.remove();
+        }
+    }
+
+    private static boolean isWritable(Player player) {
+        return NMSHandlers.getHandler().isWritable(player);
+    }
+
+    private static class PlayerBudget {
+
+        private final ArrayDeque<Deferred> deferred = new ArrayDeque<>();
+        private int sent;
+
+        private boolean offer(Player player, Object packet, PacketKind kind, int entityId) {
+            PacketKind.Priority priority = kind.getPriority();
+            if (priority == PacketKind.Priority.CRITICAL) {
+                if (!deferred.isEmpty()) releaseFor(player, kind, entityId);
+                sent++;
+                return false;
+            }
+
+            boolean writable = isWritable(player);
+            boolean overBudget = packetsPerTick > 0 && sent >= packetsPerTick;
+            if (priority == PacketKind.Priority.LOW) {
+                if (!writable || overBudget || !deferred.isEmpty()) return true;
+                sent++;
+                return false;
+            }
+
+            boolean holdBack = !deferred.isEmpty() || !writable || (priority == PacketKind.Priority.NORMAL && overBudget);
+            if (!holdBack) {
+                sent++;
+                return false;
+            }
+            if (kind.isCoalescible() && entityId != -1) {
+                deferred.removeIf(older -> older.kind == kind && older.entityId == entityId);
+            }
+            if (deferred.size() >= maxDeferred) {
+                // Memory held here is bounded too, the oldest packet goes to the connection to make room
+                Deferred oldest = deferred.poll();
+                PacketManager.deliver(player, oldest.packet, oldest.kind, oldest.entityId);
+                sent++;
+            }
+            deferred.add(new Deferred(packet, kind, entityId));
+            return true;
+        }
+
+        // Sends what was held back before a critical packet. A destroy makes anything held back for its entity pointless.
+        private void releaseFor(Player player, PacketKind kind, int entityId) {
+            if (entityId == -1) {
+                // What was held back for each entity of a multi entity destroy was already discarded
+                if (kind != PacketKind.DESTROY) release(player, true);
+                return;
+            }
+            Iterator<Deferred> iterator = deferred.iterator();
+            while (iterator.hasNext()) {
+                Deferred packet = iterator.next();
+                if (packet.entityId != entityId) continue;
+                iterator.remove();
+                if (kind == PacketKind.DESTROY) continue;
+                PacketManager.deliver(player, packet.packet, packet.kind, packet.entityId);
+                sent++;
+            }
+        }
+
+        private void release(Player player, boolean force) {
+            while (!deferred.isEmpty()) {
+                Deferred packet = deferred.peek();
+                if (!force) {
+                    if (!isWritable(player)) return;
+                    if (packet.kind.getPriority() == PacketKind.Priority.NORMAL && packetsPerTick > 0 && sent >= packetsPerTick) return;
+                }
+                deferred.poll();
+                PacketManager.deliver(player, packet.packet, packet.kind, packet.entityId);
+                sent++;
+            }
+        }
+    }
+
+    private record Deferred(Object packet, PacketKind kind, int entityId) {
+    }
+}
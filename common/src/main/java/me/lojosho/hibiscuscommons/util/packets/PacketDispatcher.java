@@ -0,0 +1,68 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.events.PacketContainer;
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
+import me.lojosho.hibiscuscommons.nms.NMSHandlers;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Hands packets to each player's netty event loop when {@link PacketManager#isAsyncDispatch() async dispatch} is on.
+ * <p>
+ * An event loop runs its tasks one at a time in the order they were submitted, and packets sent to a connection from
+ * any other thread are queued on that same loop. So everything sent to a player, dispatched or not, reaches them in
+ * the order it was sent, including a spawn followed by a destroy of the same entity.
+ */
+final class PacketDispatcher {
+
+    private PacketDispatcher() {
+    }
+
+    /**
+     * Queues a packet for every player. The packet is built once, by whichever event loop gets to it first.
+     * @param sendTo The players the packet should be sent to
+     * @param builder Builds an NMS packet or a {@link PacketContainer}. Must only use values captured when it was created.
+     */
+    static void dispatch(Collection<? extends Player> sendTo, Supplier<Object> builder) {
+        NMSHandler handler = NMSHandlers.getHandler();
+        LazyPacket packet = new LazyPacket(builder);
+        for (Player player : sendTo) {
+            if (player == null) continue;
+            handler.runOnEventLoop(player, () -> send(handler, player, packet.get()));
+        }
+    }
+
+    private static void send(NMSHandler handler, Player player, Object packet) {
+        if (packet instanceof PacketContainer container) {
+            ProtocolLibrary.getProtocolManager().sendServerPacket(player, container, null, false);
+        } else {
+            handler.sendPacket(player, packet);
+        }
+    }
+
+    private static final class LazyPacket implements Supplier<Object> {
+
+        private Supplier<Object> builder;
+        private volatile Object packet;
+
+        private LazyPacket(Supplier<Object> builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public Object get() {
+            Object built = packet;
+            if (built != null) return built;
+            synchronized (this) {
+                if (packet == null) {
+                    packet = builder.get();
+                    builder = null;
+                }
+                return packet;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import lombok.Getter;
+
+/**
+ * The kinds of packets {@link PacketManager} sends, used to decide how queued packets can be treated
+ */
+public enum PacketKind {
+    SPAWN(false, Priority.HIGH),
+    DESTROY(false, Priority.CRITICAL),
+    MOUNT(false, Priority.HIGH),
+    TELEPORT(true, Priority.NORMAL),
+    // Relative moves add up, so none of them can be dropped
+    RELATIVE_MOVE(false, Priority.NORMAL),
+    ROTATION(true, Priority.LOW),
+    LOOK(true, Priority.LOW),
+    CAMERA(false, Priority.CRITICAL),
+    LEASH(false, Priority.NORMAL),
+    EQUIPMENT(false, Priority.NORMAL),
+    INVENTORY(false, Priority.NORMAL),
+    GAMEMODE(false, Priority.NORMAL),
+    OTHER(false, Priority.NORMAL);
+
+    /**
+     * Whether a newer packet of this kind for the same entity fully replaces an older one, so the older one can be dropped
+     */
+    @Getter
+    private final boolean coalescible;
+    /**
+     * How {@link PacketBudget} treats this kind of packet when a player's connection is backed up
+     */
+    @Getter
+    private final Priority priority;
+
+    PacketKind(boolean coalescible, Priority priority) {
+        this.coalescible = coalescible;
+        this.priority = priority;
+    }
+
+    public enum Priority {
+        /**
+         * Always sent straight away
+         */
+        CRITICAL,
+        /**
+         * Only held back while the connection isn't writable
+         */
+        HIGH,
+        /**
+         * Held back while the connection isn't writable or the player is over budget
+         */
+        NORMAL,
+        /**
+         * Dropped while the connection isn't writable or the player is over budget, as a later update replaces it
+         */
+        LOW
+    }
+}
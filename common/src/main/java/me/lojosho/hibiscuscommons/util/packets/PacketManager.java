@@ -1,26 +1,51 @@
 package me.lojosho.hibiscuscommons.util.packets;
 
-import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.events.PacketContainer;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import com.comphenix.protocol.injector.netty.WirePacket;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.nms.NMSHandler;
 import me.lojosho.hibiscuscommons.nms.NMSHandlers;
 import me.lojosho.hibiscuscommons.util.MessagesUtil;
+import me.lojosho.hibiscuscommons.util.PlayerIndex;
 import org.bukkit.Location;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class PacketManager {
 
+    /**
+     * When enabled, packets going to more than one player are encoded once and the same buffer is written to every viewer
+     */
+    @Getter @Setter
+    private static boolean broadcasting = false;
+    /**
+     * When enabled, packets are built by the version's NMS handler, with ProtocolLib only used for packets it can't build
+     */
+    @Getter @Setter
+    private static boolean nativePackets = true;
+    /**
+     * When enabled, packets built by PacketManager are built and sent on each player's netty event loop instead of the
+     * calling thread. Everything sent to a player still arrives in the order it was sent, and tick batching and the
+     * {@link PacketBudget packet budget} are skipped.
+     */
+    @Getter @Setter
+    private static boolean asyncDispatch = false;
+
     public static void sendEntitySpawnPacket(
             final @NotNull Location location,
             final int entityId,
@@ -28,27 +53,31 @@ public class PacketManager {
             final UUID uuid,
             final @NotNull List<Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.SPAWN_ENTITY);
-        packet.getModifier().writeDefaults();
-        packet.getUUIDs().write(0, uuid);
-        packet.getIntegers().write(0, entityId);
-        packet.getEntityTypeModifier().write(0, entityType);
-        packet.getDoubles().
-                write(0, location.getX()).
-                write(1, location.getY()).
-                write(2, location.getZ());
-        for (Player p : sendTo) sendPacket(p, packet);
+        sendEntitySpawnPacket(location, entityId, entityType, uuid, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendEntitySpawnPacket(
+            final @NotNull Location location,
+            final int entityId,
+            final EntityType entityType,
+            final UUID uuid,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        EntityMovement.reset(entityId, sendTo);
+        EquipmentState.reset(entityId, sendTo);
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+        sendPacket(sendTo, PacketKind.SPAWN, entityId,
+                handler -> handler.createSpawnEntityPacket(entityId, uuid, entityType, x, y, z),
+                () -> ProtocolLibPackets.spawnEntity(entityId, uuid, entityType, x, y, z));
     }
 
     public static void gamemodeChangePacket(
             Player player,
             int gamemode
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.GAME_STATE_CHANGE);
-        packet.getGameStateIDs().write(0, 3);
-        // Tells what event this is. This is a change gamemode event.
-        packet.getFloat().write(0, (float) gamemode);
-        sendPacket(player, packet);
+        sendPacket(player, ProtocolLibPackets.gamemodeChange(gamemode), PacketKind.GAMEMODE, -1);
         MessagesUtil.sendDebugMessages("Gamemode Change sent to " + player + " to be " + gamemode);
     }
 
@@ -57,10 +86,15 @@ public class PacketManager {
             int passengerId,
             @NotNull List<Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.MOUNT);
-        packet.getIntegers().write(0, mountId);
-        packet.getIntegerArrays().write(0, new int[]{passengerId});
-        for (Player p : sendTo) sendPacket(p, packet);
+        ridingMountPacket(mountId, passengerId, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void ridingMountPacket(
+            int mountId,
+            int passengerId,
+            @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendRidingPacket(mountId, new int[] {passengerId}, sendTo);
     }
 
     public static void sendLookPacket(
@@ -68,10 +102,18 @@ public class PacketManager {
             @NotNull Location location,
             @NotNull List<Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
-        packet.getIntegers().write(0, entityId);
-        packet.getBytes().write(0, (byte) (location.getYaw() * 256.0F / 360.0F));
-        for (Player p : sendTo) sendPacket(p, packet);
+        sendLookPacket(entityId, location, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendLookPacket(
+            int entityId,
+            @NotNull Location location,
+            @NotNull Collection<? extends Player> sendTo
+    ) {
+        byte yaw = toAngle(location.getYaw());
+        sendPacket(sendTo, PacketKind.LOOK, entityId,
+                handler -> handler.createHeadRotationPacket(entityId, yaw),
+                () -> ProtocolLibPackets.headRotation(entityId, yaw));
     }
 
     public static void sendRotationPacket(
@@ -80,17 +122,16 @@ public class PacketManager {
             boolean onGround,
             @NotNull List<Player> sendTo
     ) {
-        float ROTATION_FACTOR = 256.0F / 360.0F;
-        float yaw = location.getYaw() * ROTATION_FACTOR;
-        float pitch = location.getPitch() * ROTATION_FACTOR;
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_LOOK);
-        packet.getIntegers().write(0, entityId);
-        packet.getBytes().write(0, (byte) yaw);
-        packet.getBytes().write(1, (byte) pitch);
+        sendRotationPacket(entityId, location, onGround, (Collection<? extends Player>) sendTo);
+    }
 
-        //Bukkit.getLogger().info("DEBUG: Yaw: " + (location.getYaw() * ROTATION_FACTOR) + " | Original Yaw: " + location.getYaw());
-        packet.getBooleans().write(0, onGround);
-        for (Player p : sendTo) sendPacket(p, packet);
+    public static void sendRotationPacket(
+            int entityId,
+            @NotNull Location location,
+            boolean onGround,
+            @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendRotationPacket(entityId, toAngle(location.getYaw()), toAngle(location.getPitch()), onGround, sendTo);
     }
 
     public static void sendRotationPacket(
@@ -99,22 +140,36 @@ public class PacketManager {
             boolean onGround,
             @NotNull List<Player> sendTo
     ) {
-        float ROTATION_FACTOR = 256.0F / 360.0F;
-        float yaw2 = yaw * ROTATION_FACTOR;
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_LOOK);
-        packet.getIntegers().write(0, entityId);
-        packet.getBytes().write(0, (byte) yaw2);
-        packet.getBytes().write(1, (byte) 0);
+        sendRotationPacket(entityId, yaw, onGround, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendRotationPacket(
+            int entityId,
+            int yaw,
+            boolean onGround,
+            @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendRotationPacket(entityId, toAngle(yaw), (byte) 0, onGround, sendTo);
+    }
 
-        //Bukkit.getLogger().info("DEBUG: Yaw: " + (location.getYaw() * ROTATION_FACTOR) + " | Original Yaw: " + location.getYaw());
-        packet.getBooleans().write(0, onGround);
-        for (Player p : sendTo) sendPacket(p, packet);
+    private static void sendRotationPacket(int entityId, byte yaw, byte pitch, boolean onGround, Collection<? extends Player> sendTo) {
+        sendPacket(sendTo, PacketKind.ROTATION, entityId,
+                handler -> handler.createRotationPacket(entityId, yaw, pitch, onGround),
+                () -> ProtocolLibPackets.rotation(entityId, yaw, pitch, onGround));
     }
 
     public static void sendRidingPacket(
             final int mountId,
             final int passengerId,
             final @NotNull List<Player> sendTo
+    ) {
+        sendRidingPacket(mountId, passengerId, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendRidingPacket(
+            final int mountId,
+            final int passengerId,
+            final @NotNull Collection<? extends Player> sendTo
     ) {
         sendRidingPacket(mountId, new int[] {passengerId}, sendTo);
     }
@@ -124,12 +179,23 @@ public class PacketManager {
             final int[] passengerIds,
             final @NotNull List<Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.MOUNT);
-        packet.getIntegers().write(0, mountId);
-        packet.getIntegerArrays().write(0, passengerIds);
-        for (final Player p : sendTo) {
-            sendPacket(p, packet);
-        }
+        sendRidingPacket(mountId, passengerIds, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendRidingPacket(
+            final int mountId,
+            final int[] passengerIds,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        // Copied as the packet may be built after the caller has reused the array
+        int[] passengers = passengerIds.clone();
+        sendPacket(sendTo, PacketKind.MOUNT, mountId,
+                handler -> handler.createMountPacket(mountId, passengers),
+                () -> ProtocolLibPackets.mount(mountId, passengers));
+    }
+
+    public static void sendEntityDestroyPacket(final int entityId, @NotNull List<Player> sendTo) {
+        sendEntityDestroyPacket(entityId, (Collection<? extends Player>) sendTo);
     }
 
     /**
@@ -137,22 +203,38 @@ public class PacketManager {
      * @param entityId The entity to delete for a player
      * @param sendTo The players the packet should be sent to
      */
-    public static void sendEntityDestroyPacket(final int entityId, @NotNull List<Player> sendTo) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
-        packet.getModifier().write(0, new IntArrayList(new int[]{entityId}));
-        for (final Player p : sendTo) sendPacket(p, packet);
+    public static void sendEntityDestroyPacket(final int entityId, @NotNull Collection<? extends Player> sendTo) {
+        sendEntityDestroyPacket(new int[] {entityId}, entityId, sendTo);
+    }
+
+    public static void sendEntityDestroyPacket(final List<Integer> ids, @NotNull List<Player> sendTo) {
+        sendEntityDestroyPacket(ids, (Collection<? extends Player>) sendTo);
     }
 
     /**
      * Destroys an entity from a player
      * @param sendTo The players the packet should be sent to
      */
-    public static void sendEntityDestroyPacket(final List<Integer> ids, @NotNull List<Player> sendTo) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
-        IntArrayList entities = new IntArrayList(new int[]{});
-        for (int id : ids) entities.add(id);
-        packet.getModifier().write(0, entities);
-        for (final Player p : sendTo) sendPacket(p, packet);
+    public static void sendEntityDestroyPacket(final List<Integer> ids, @NotNull Collection<? extends Player> sendTo) {
+        int[] entityIds = new int[ids.size()];
+        for (int i = 0; i < entityIds.length; i++) entityIds[i] = ids.get(i);
+        sendEntityDestroyPacket(entityIds, entityIds.length == 1 ? entityIds[0] : -1, sendTo);
+    }
+
+    private static void sendEntityDestroyPacket(int[] entityIds, int entityId, Collection<? extends Player> sendTo) {
+        for (int id : entityIds) {
+            EntityMovement.reset(id, sendTo);
+            EquipmentState.reset(id, sendTo);
+            // The budget only drops held back packets itself for single entity destroys
+            if (entityId == -1) PacketBudget.discard(id, sendTo);
+        }
+        sendPacket(sendTo, PacketKind.DESTROY, entityId,
+                handler -> handler.createDestroyPacket(entityIds),
+                () -> ProtocolLibPackets.destroy(entityIds));
+    }
+
+    public static void sendCameraPacket(final int entityId, @NotNull List<Player> sendTo) {
+        sendCameraPacket(entityId, (Collection<? extends Player>) sendTo);
     }
 
     /**
@@ -160,10 +242,10 @@ public class PacketManager {
      * @param entityId The Entity ID that camera will go towards
      * @param sendTo The players that will be sent this packet
      */
-    public static void sendCameraPacket(final int entityId, @NotNull List<Player> sendTo) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.CAMERA);
-        packet.getIntegers().write(0, entityId);
-        for (final Player p : sendTo) sendPacket(p, packet);
+    public static void sendCameraPacket(final int entityId, @NotNull Collection<? extends Player> sendTo) {
+        sendPacket(sendTo, PacketKind.CAMERA, entityId,
+                handler -> handler.createCameraPacket(entityId),
+                () -> ProtocolLibPackets.camera(entityId));
         MessagesUtil.sendDebugMessages(sendTo + " | " + entityId + " has had a camera packet on them!");
     }
 
@@ -172,12 +254,26 @@ public class PacketManager {
             final int entityId,
             final @NotNull List<Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ATTACH_ENTITY);
-        packet.getIntegers().write(0, leashedEntity);
-        packet.getIntegers().write(1, entityId);
-        for (final Player p : sendTo) {
-            sendPacket(p, packet);
-        }
+        sendLeashPacket(leashedEntity, entityId, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void sendLeashPacket(
+            final int leashedEntity,
+            final int entityId,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendPacket(sendTo, PacketKind.LEASH, leashedEntity,
+                handler -> handler.createLeashPacket(leashedEntity, entityId),
+                () -> ProtocolLibPackets.leash(leashedEntity, entityId));
+    }
+
+    public static void sendTeleportPacket(
+            final int entityId,
+            final @NotNull Location location,
+            boolean onGround,
+            final @NotNull List<Player> sendTo
+    ) {
+        sendTeleportPacket(entityId, location, onGround, (Collection<? extends Player>) sendTo);
     }
 
     /**
@@ -191,47 +287,167 @@ public class PacketManager {
             final int entityId,
             final @NotNull Location location,
             boolean onGround,
-            final @NotNull List<Player> sendTo
+            final @NotNull Collection<? extends Player> sendTo
     ) {
-        PacketContainer packet = new PacketContainer(PacketType.Play.Server.ENTITY_TELEPORT);
-        packet.getIntegers().write(0, entityId);
-        packet.getDoubles().write(0, location.getX());
-        packet.getDoubles().write(1, location.getY());
-        packet.getDoubles().write(2, location.getZ());
-        packet.getBytes().write(0, (byte) (location.getYaw() * 256.0F / 360.0F));
-        packet.getBytes().write(1, (byte) (location.getPitch() * 256.0F / 360.0F));
-        packet.getBooleans().write(0, onGround);
-        for (final Player p : sendTo) {
-            sendPacket(p, packet);
-        }
+        EntityMovement.reset(entityId, sendTo);
+        teleport(entityId, location, onGround, sendTo);
     }
 
+    static void teleport(int entityId, Location location, boolean onGround, Collection<? extends Player> sendTo) {
+        byte yaw = toAngle(location.getYaw());
+        byte pitch = toAngle(location.getPitch());
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+        sendPacket(sendTo, PacketKind.TELEPORT, entityId,
+                handler -> handler.createTeleportPacket(entityId, x, y, z, yaw, pitch, onGround),
+                () -> ProtocolLibPackets.teleport(entityId, x, y, z, yaw, pitch, onGround));
+    }
 
+    /**
+     * Moves an entity, sending a relative move to viewers that were sent its last position and a teleport to everyone
+     * else, or when it moved 8 or more blocks.
+     * @param entityId Entity this affects
+     * @param location Where the entity is now
+     * @param onGround If the entity is on the ground
+     * @param sendTo Whom to send the packet to
+     * @see EntityMovement
+     */
+    public static void sendMovePacket(
+            final int entityId,
+            final @NotNull Location location,
+            boolean onGround,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        EntityMovement.move(entityId, location, onGround, sendTo);
+    }
+
+    /**
+     * Moves an entity by less than 8 blocks from where the client last saw it
+     * @param entityId Entity this affects
+     * @param deltaX The change on the x axis, in 1/4096ths of a block
+     * @param deltaY The change on the y axis, in 1/4096ths of a block
+     * @param deltaZ The change on the z axis, in 1/4096ths of a block
+     * @param onGround If the entity is on the ground
+     * @param sendTo Whom to send the packet to
+     */
+    public static void sendRelativeMovePacket(
+            final int entityId,
+            short deltaX,
+            short deltaY,
+            short deltaZ,
+            boolean onGround,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendPacket(sendTo, PacketKind.RELATIVE_MOVE, entityId,
+                handler -> handler.createRelativeMovePacket(entityId, deltaX, deltaY, deltaZ, onGround),
+                () -> ProtocolLibPackets.relativeMove(entityId, deltaX, deltaY, deltaZ, onGround));
+    }
+
+    static void sendRelativeMoveLookPacket(
+            final int entityId,
+            short deltaX,
+            short deltaY,
+            short deltaZ,
+            byte yaw,
+            byte pitch,
+            boolean onGround,
+            final @NotNull Collection<? extends Player> sendTo
+    ) {
+        sendPacket(sendTo, PacketKind.RELATIVE_MOVE, entityId,
+                handler -> handler.createRelativeMoveLookPacket(entityId, deltaX, deltaY, deltaZ, yaw, pitch, onGround),
+                () -> ProtocolLibPackets.relativeMoveLook(entityId, deltaX, deltaY, deltaZ, yaw, pitch, onGround));
+    }
 
     @NotNull
     public static List<Player> getViewers(Location location, int distance) {
+        return getViewers(location, distance, false);
+    }
+
+    /**
+     * Gets the players that should see something at a location
+     * @param location The location being viewed
+     * @param distance How far away players can be, 0 or less for the whole world
+     * @param spherical true to check the real distance, false to check a cube around the location
+     * @return The players that can view the location
+     */
+    @NotNull
+    public static List<Player> getViewers(Location location, int distance, boolean spherical) {
         ArrayList<Player> viewers = new ArrayList<>();
+        getViewers(location, distance, spherical, viewers);
+        return viewers;
+    }
+
+    /**
+     * Adds the players that should see something at a location to a caller supplied collection, so a buffer that is
+     * cleared and refilled every tick doesn't allocate a new list each time
+     * @param location The location being viewed
+     * @param distance How far away players can be, 0 or less for the whole world
+     * @param spherical true to check the real distance, false to check a cube around the location
+     * @param into The collection the viewers are added to
+     */
+    public static void getViewers(Location location, int distance, boolean spherical, @NotNull Collection<? super Player> into) {
         if (distance <= 0) {
-            viewers.addAll(location.getWorld().getPlayers());
+            PlayerIndex.getPlayersInWorld(location.getWorld(), into);
+        } else if (spherical) {
+            PlayerIndex.getPlayersInRadius(location, distance, into);
         } else {
-            viewers.addAll(getNearbyPlayers(location, distance));
+            PlayerIndex.getPlayersInCube(location, distance, into);
         }
-        return viewers;
     }
 
     public static void slotUpdate(
             Player player,
             int slot
     ) {
+        InventoryShadow.reset(player, slot);
         NMSHandlers.getHandler().slotUpdate(player, slot);
     }
 
+    /**
+     * Shows items in a player's inventory without changing the real inventory. Only the slots the player isn't already
+     * shown are sent, and if enough of them changed the whole inventory is resent in one packet. Must be called from the main thread.
+     * @param player The player
+     * @param items The items to show, by inventory slot
+     */
+    public static void slotUpdate(
+            @NotNull Player player,
+            @NotNull Map<Integer, ItemStack> items
+    ) {
+        Map<Integer, ItemStack> changed = InventoryShadow.diff(player, items);
+        if (changed.isEmpty()) return;
+        NMSHandler handler = NMSHandlers.getHandler();
+        if (changed.size() >= InventoryShadow.getContentThreshold()) {
+            // Resending everything would wipe the other items the player is being shown, so they go in too
+            sendNMSPacket(player, handler.createInventoryContentPacket(player, InventoryShadow.getShown(player)), PacketKind.INVENTORY, -1);
+            return;
+        }
+        for (Map.Entry<Integer, ItemStack> entry : changed.entrySet()) {
+            sendNMSPacket(player, handler.createSlotPacket(player, entry.getKey(), entry.getValue()), PacketKind.INVENTORY, -1);
+        }
+    }
+
     public static void equipmentSlotUpdate(
             int entityId,
             org.bukkit.inventory.EquipmentSlot slot,
             ItemStack item,
             List<Player> sendTo
     ) {
+        equipmentSlotUpdate(entityId, slot, item, (Collection<? extends Player>) sendTo);
+    }
+
+    public static void equipmentSlotUpdate(
+            int entityId,
+            org.bukkit.inventory.EquipmentSlot slot,
+            ItemStack item,
+            Collection<? extends Player> sendTo
+    ) {
+        if (EquipmentState.isEnabled()) {
+            HashMap<EquipmentSlot, ItemStack> equipment = new HashMap<>();
+            equipment.put(slot, item);
+            equipmentSlotUpdate(entityId, equipment, sendTo);
+            return;
+        }
         NMSHandlers.getHandler().equipmentSlotUpdate(entityId, slot, item, sendTo);
     }
 
@@ -240,22 +456,196 @@ public class PacketManager {
             HashMap<EquipmentSlot, ItemStack> equipment,
             List<Player> sendTo
     ) {
-        NMSHandlers.getHandler().equipmentSlotUpdate(entityId, equipment, sendTo);
+        equipmentSlotUpdate(entityId, equipment, (Collection<? extends Player>) sendTo);
     }
 
-    private static List<Player> getNearbyPlayers(Location location, int distance) {
-        List<Player> players = new ArrayList<>();
-        for (Entity entity : location.getWorld().getNearbyEntities(location, distance, distance, distance)) {
-            if (entity instanceof Player) {
-                players.add((Player) entity);
+    public static void equipmentSlotUpdate(
+            int entityId,
+            HashMap<EquipmentSlot, ItemStack> equipment,
+            Collection<? extends Player> sendTo
+    ) {
+        if (EquipmentState.isEnabled()) {
+            // Only the slots each viewer doesn't already have are sent
+            for (EquipmentState.Update update : EquipmentState.diff(entityId, equipment, sendTo)) {
+                NMSHandlers.getHandler().equipmentSlotUpdate(entityId, update.equipment(), update.viewers());
             }
+            return;
+        }
+        NMSHandlers.getHandler().equipmentSlotUpdate(entityId, equipment, sendTo);
+    }
+
+    /**
+     * Sends a packet that is built natively when the NMS handler can, and through ProtocolLib otherwise. With async
+     * dispatch, only the builders are captured here and the packet is built off the calling thread.
+     */
+    private static void sendPacket(
+            Collection<? extends Player> sendTo,
+            PacketKind kind,
+            int entityId,
+            Function<NMSHandler, Object> nativePacket,
+            Supplier<PacketContainer> fallback
+    ) {
+        if (sendTo.isEmpty()) return;
+        if (asyncDispatch) {
+            PacketMetrics.record(kind, sendTo.size());
+            PacketDispatcher.dispatch(sendTo, () -> createPacket(nativePacket, fallback));
+            return;
         }
-        return players;
+        Object packet = createPacket(nativePacket, fallback);
+        if (packet instanceof PacketContainer container) sendPacket(sendTo, container, kind, entityId);
+        else sendNMSPacket(sendTo, packet, kind, entityId);
+    }
+
+    private static Object createPacket(Function<NMSHandler, Object> nativePacket, Supplier<PacketContainer> fallback) {
+        NMSHandler handler = getNativeHandler();
+        Object packet = handler == null ? null : nativePacket.apply(handler);
+        return packet != null ? packet : fallback.get();
     }
 
     public static void sendPacket(Player player, PacketContainer packet) {
+        sendPacket(player, packet, PacketKind.OTHER, -1);
+    }
+
+    /**
+     * Sends a packet to every player in the collection
+     * @param sendTo The players the packet should be sent to
+     * @param packet The packet to send
+     */
+    public static void sendPacket(@NotNull Collection<? extends Player> sendTo, @NotNull PacketContainer packet) {
+        sendPacket(sendTo, packet, PacketKind.OTHER, -1);
+    }
+
+    private static void sendPacket(Player player, PacketContainer packet, PacketKind kind, int entityId) {
+        if (player == null) return;
+        PacketMetrics.record(kind, 1);
+        send(player, packet, kind, entityId);
+    }
+
+    private static void sendPacket(Collection<? extends Player> sendTo, PacketContainer packet, PacketKind kind, int entityId) {
+        PacketMetrics.record(kind, sendTo.size());
+        if (shouldBroadcast(sendTo)) {
+            broadcastPacket(packet.getHandle(), sendTo);
+            return;
+        }
+        for (Player p : sendTo) send(p, packet, kind, entityId);
+    }
+
+    /**
+     * Sends an NMS packet to a player, going through tick batching if it is enabled
+     * @param player The player the packet should be sent to
+     * @param packet The NMS packet to send
+     */
+    public static void sendNMSPacket(Player player, @NotNull Object packet) {
+        sendNMSPacket(player, packet, PacketKind.OTHER, -1);
+    }
+
+    /**
+     * Sends an NMS packet to a player, going through tick batching if it is enabled
+     * @param player The player the packet should be sent to
+     * @param packet The NMS packet to send
+     * @param kind The kind of packet, used to coalesce updates that supersede each other
+     * @param entityId The entity the packet is about, or -1 if it isn't about a single entity
+     */
+    public static void sendNMSPacket(Player player, @NotNull Object packet, @NotNull PacketKind kind, int entityId) {
         if (player == null) return;
-        ProtocolLibrary.getProtocolManager().sendServerPacket(player, packet, null,false);
+        PacketMetrics.record(kind, 1);
+        send(player, packet, kind, entityId);
+    }
+
+    private static void send(Player player, Object packet, PacketKind kind, int entityId) {
+        if (player == null) return;
+        if (PacketBudget.offer(player, packet, kind, entityId)) return;
+        deliver(player, packet, kind, entityId);
+    }
+
+    /**
+     * Sends a packet that has already been through the budget, queueing it if tick batching is on
+     * @param packet An NMS packet or a ProtocolLib container
+     */
+    static void deliver(Player player, Object packet, PacketKind kind, int entityId) {
+        if (packet instanceof PacketContainer container) {
+            if (PacketBatch.queue(player, container.getHandle(), kind, entityId)) return;
+            ProtocolLibrary.getProtocolManager().sendServerPacket(player, container, null, false);
+            return;
+        }
+        if (PacketBatch.queue(player, packet, kind, entityId)) return;
+        NMSHandlers.getHandler().sendPacket(player, packet);
+    }
+
+    /**
+     * Sends an NMS packet to every player in the collection
+     * @param sendTo The players the packet should be sent to
+     * @param packet The NMS packet to send
+     */
+    public static void sendNMSPacket(@NotNull Collection<? extends Player> sendTo, @NotNull Object packet) {
+        sendNMSPacket(sendTo, packet, PacketKind.OTHER, -1);
+    }
+
+    /**
+     * Sends an NMS packet to every player in the collection
+     * @param sendTo The players the packet should be sent to
+     * @param packet The NMS packet to send
+     * @param kind The kind of packet, used to coalesce updates that supersede each other
+     * @param entityId The entity the packet is about, or -1 if it isn't about a single entity
+     */
+    public static void sendNMSPacket(@NotNull Collection<? extends Player> sendTo, @NotNull Object packet, @NotNull PacketKind kind, int entityId) {
+        PacketMetrics.record(kind, sendTo.size());
+        if (shouldBroadcast(sendTo)) {
+            broadcastPacket(packet, sendTo);
+            return;
+        }
+        for (Player p : sendTo) send(p, packet, kind, entityId);
+    }
+
+    /**
+     * Whether a packet going to these players should take the encode-once broadcast path
+     * @param sendTo The players the packet is going to
+     * @return true if broadcasting is enabled, packets are not being batched or budgeted and there is more than one viewer
+     */
+    public static boolean shouldBroadcast(@NotNull Collection<? extends Player> sendTo) {
+        return broadcasting && sendTo.size() > 1 && !PacketBatch.isBatching() && !PacketBudget.isActive();
+    }
+
+    @Nullable
+    private static NMSHandler getNativeHandler() {
+        if (!nativePackets) return null;
+        NMSHandler handler = NMSHandlers.getHandler();
+        if (handler == null || !handler.getSupported()) return null;
+        return handler;
+    }
+
+    static byte toAngle(float degrees) {
+        return (byte) (degrees * 256.0F / 360.0F);
+    }
+
+    /**
+     * Encodes a packet a single time and writes the encoded bytes to every player's connection.
+     * Compression and encryption still happen per connection, as both depend on that connection's settings.
+     * @param packet The NMS packet to send
+     * @param sendTo The players the packet should be sent to
+     */
+    public static void broadcastPacket(@NotNull Object packet, @NotNull Collection<? extends Player> sendTo) {
+        WirePacket wirePacket = WirePacket.fromPacket(packet);
+        NMSHandlers.getHandler().sendEncodedPacket(encode(wirePacket), sendTo);
+    }
+
+    private static byte[] encode(@NotNull WirePacket wirePacket) {
+        int id = wirePacket.getId();
+        byte[] bytes = wirePacket.getBytes();
+
+        // Packet ids are written as a VarInt ahead of the payload
+        int idLength = 1;
+        for (int value = id >>> 7; value != 0; value >>>= 7) idLength++;
+
+        byte[] encoded = new byte[idLength + bytes.length];
+        for (int i = 0; i < idLength; i++) {
+            byte part = (byte) (id & 0x7F);
+            id >>>= 7;
+            if (id != 0) part |= (byte) 0x80;
+            encoded[i] = part;
+        }
+        System.arraycopy(bytes, 0, encoded, idLength, bytes.length);
+        return encoded;
     }
 
 }
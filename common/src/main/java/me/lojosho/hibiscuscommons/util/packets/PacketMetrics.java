@@ -0,0 +1,247 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what {@link PacketManager} sends: packets and estimated bytes per packet kind, packets per sending method,
+ * per calling plugin and per tick, and how many viewers each send goes to.
+ * <p>
+ * Counters are {@link LongAdder}s so recording from several threads doesn't contend. The method and plugin of a send
+ * are found by walking the stack, so only one in {@link #getCallerSampleRate() every few} sends is walked and counted
+ * that many times over, which makes the per method and per plugin counts estimates. Nothing is recorded, and the
+ * caller isn't looked up, while metrics are disabled.
+ */
+public class PacketMetrics {
+
+    private static final String PACKAGE = "me.lojosho.hibiscuscommons.";
+    // Viewer counts are grouped by the highest count in each bucket
+    private static final int[] FAN_OUT_BUCKETS = {1, 4, 16, 64, 256, Integer.MAX_VALUE};
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private static final EnumMap<PacketKind, LongAdder> PACKETS = new EnumMap<>(PacketKind.class);
+    private static final EnumMap<PacketKind, LongAdder> BYTES = new EnumMap<>(PacketKind.class);
+    private static final ConcurrentHashMap<String, LongAdder> METHODS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> PLUGINS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, String> PLUGIN_NAMES = new ConcurrentHashMap<>();
+    private static final LongAdder[] FAN_OUT = new LongAdder[FAN_OUT_BUCKETS.length];
+    private static final LongAdder CURRENT_TICK = new LongAdder();
+
+    static {
+        for (PacketKind kind : PacketKind.values()) {
+            PACKETS.put(kind, new LongAdder());
+            BYTES.put(kind, new LongAdder());
+        }
+        for (int i = 0; i < FAN_OUT.length; i++) FAN_OUT[i] = new LongAdder();
+    }
+
+    @Getter
+    private static boolean enabled = false;
+    /**
+     * Looks up the caller of one in this many sends, 1 to look up every send
+     */
+    @Getter @Setter
+    private static int callerSampleRate = 16;
+    @Getter
+    private static long lastTick = 0;
+    @Getter
+    private static long peakTick = 0;
+    private static long since = System.currentTimeMillis();
+    private static BukkitTask task;
+
+    /**
+     * Starts or stops recording
+     * @param enabled true to record what is sent
+     */
+    public static void setEnabled(boolean enabled) {
+        if (PacketMetrics.enabled == enabled) return;
+        PacketMetrics.enabled = enabled;
+        if (enabled) {
+            task = Bukkit.getScheduler().runTaskTimer(HibiscusCommonsPlugin.getInstance(), PacketMetrics::tick, 1L, 1L);
+        } else {
+            if (task != null) task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Records a send
+     * @param kind The kind of packet
+     * @param viewers How many players it was sent to
+     */
+    static void record(PacketKind kind, int viewers) {
+        if (!enabled || viewers <= 0) return;
+        PACKETS.get(kind).add(viewers);
+        BYTES.get(kind).add((long) estimateSize(kind) * viewers);
+        CURRENT_TICK.add(viewers);
+        for (int i = 0; i < FAN_OUT_BUCKETS.length; i++) {
+            if (viewers <= FAN_OUT_BUCKETS[i]) {
+                FAN_OUT[i].increment();
+                break;
+            }
+        }
+
+        int sampleRate = Math.max(1, callerSampleRate);
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return;
+        // The outermost of our frames is the method that was called, and the frame after it is whoever called it.
+        // The walk stops there rather than going through the rest of the stack.
+        StackWalker.StackFrame[] caller = WALKER.walk(frames -> {
+            StackWalker.StackFrame[] found = new StackWalker.StackFrame[2];
+            Iterator<StackWalker.StackFrame> iterator = frames.dropWhile(frame -> frame.getDeclaringClass() == PacketMetrics.class).iterator();
+            while (iterator.hasNext()) {
+                StackWalker.StackFrame frame = iterator.next();
+                if (!frame.getClassName().startsWith(PACKAGE)) {
+                    found[1] = frame;
+                    break;
+                }
+                found[0] = frame;
+            }
+            return found;
+        });
+        long sampled = (long) viewers * sampleRate;
+        if (caller[0] != null) {
+            String method = caller[0].getDeclaringClass().getSimpleName() + "." + caller[0].getMethodName();
+            METHODS.computeIfAbsent(method, k -> new LongAdder()).add(sampled);
+        }
+        String plugin = caller[1] == null ? "HibiscusCommons" : getPluginName(caller[1].getDeclaringClass());
+        PLUGINS.computeIfAbsent(plugin, k -> new LongAdder()).add(sampled);
+    }
+
+    public static long getPackets(@NotNull PacketKind kind) {
+        return PACKETS.get(kind).sum();
+    }
+
+    public static long getEstimatedBytes(@NotNull PacketKind kind) {
+        return BYTES.get(kind).sum();
+    }
+
+    /**
+     * @return The packets sent by each plugin, counting each viewer, estimated from the sampled sends
+     */
+    @NotNull
+    public static Map<String, Long> getPacketsByPlugin() {
+        return sums(PLUGINS);
+    }
+
+    /**
+     * @return The packets sent through each method, counting each viewer, estimated from the sampled sends
+     */
+    @NotNull
+    public static Map<String, Long> getPacketsByMethod() {
+        return sums(METHODS);
+    }
+
+    /**
+     * Clears every counter
+     */
+    public static void reset() {
+        for (LongAdder adder : PACKETS.values()) adder.reset();
+        for (LongAdder adder : BYTES.values()) adder.reset();
+        for (LongAdder adder : FAN_OUT) adder.reset();
+        METHODS.clear();
+        PLUGINS.clear();
+        CURRENT_TICK.reset();
+        lastTick = 0;
+        peakTick = 0;
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes every counter in a plain text format, one value per line
+     * @return The snapshot
+     */
+    @NotNull
+    public static String snapshot() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("# HibiscusCommons packet metrics, bytes are uncompressed estimates\n");
+        builder.append("hibiscus_metrics_seconds ").append((System.currentTimeMillis() - since) / 1000).append('\n');
+        for (PacketKind kind : PacketKind.values()) {
+            builder.append("hibiscus_packets_total{kind=\"").append(kind).append("\"} ").append(getPackets(kind)).append('\n');
+            builder.append("hibiscus_bytes_estimated_total{kind=\"").append(kind).append("\"} ").append(getEstimatedBytes(kind)).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : getPacketsByMethod().entrySet()) {
+            builder.append("hibiscus_packets_total{method=\"").append(entry.getKey()).append("\"} ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : getPacketsByPlugin().entrySet()) {
+            builder.append("hibiscus_packets_total{plugin=\"").append(entry.getKey()).append("\"} ").append(entry.getValue()).append('\n');
+        }
+        builder.append("hibiscus_packets_last_tick ").append(lastTick).append('\n');
+        builder.append("hibiscus_packets_peak_tick ").append(peakTick).append('\n');
+        for (int i = 0; i < FAN_OUT_BUCKETS.length; i++) {
+            String bucket = FAN_OUT_BUCKETS[i] == Integer.MAX_VALUE ? "+Inf" : String.valueOf(FAN_OUT_BUCKETS[i]);
+            builder.append("hibiscus_fan_out{le=\"").append(bucket).append("\"} ").append(FAN_OUT[i].sum()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes a {@link #snapshot()} to metrics.txt in the plugin's folder
+     * @return The file written to
+     * @throws IOException If the file can't be written
+     */
+    @NotNull
+    public static File export() throws IOException {
+        File file = new File(HibiscusCommonsPlugin.getInstance().getDataFolder(), "metrics.txt");
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), snapshot(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static void tick() {
+        lastTick = CURRENT_TICK.sumThenReset();
+        if (lastTick > peakTick) peakTick = lastTick;
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+        TreeMap<String, Long> sums = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : adders.entrySet()) sums.put(entry.getKey(), entry.getValue().sum());
+        return sums;
+    }
+
+    private static String getPluginName(Class<?> caller) {
+        return PLUGIN_NAMES.computeIfAbsent(caller, clazz -> {
+            try {
+                return JavaPlugin.getProvidingPlugin(clazz).getName();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Called by the server itself, such as from one of our scheduled tasks
+                return "HibiscusCommons";
+            }
+        });
+    }
+
+    // Rough sizes of each kind of packet on the wire, before compression
+    private static int estimateSize(PacketKind kind) {
+        return switch (kind) {
+            case SPAWN -> 60;
+            case DESTROY -> 6;
+            case MOUNT -> 8;
+            case TELEPORT -> 36;
+            case RELATIVE_MOVE -> 14;
+            case ROTATION -> 7;
+            case LOOK -> 6;
+            case CAMERA -> 4;
+            case LEASH -> 10;
+            case EQUIPMENT -> 40;
+            case INVENTORY -> 48;
+            case GAMEMODE -> 7;
+            case OTHER -> 32;
+        };
+    }
+}
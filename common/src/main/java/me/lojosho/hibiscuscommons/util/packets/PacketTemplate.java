@@ -0,0 +1,41 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.reflect.StructureModifier;
+
+import java.util.function.Function;
+
+/**
+ * A prepared ProtocolLib packet. The prototype and the accessors for its fields are resolved once per packet type,
+ * and every packet made from it is a clone of the prototype with only the fields that change written to it.
+ */
+final class PacketTemplate {
+
+    private final PacketContainer prototype;
+
+    /**
+     * @param type The packet type
+     * @param writeDefaults true to fill every field of the prototype with a default value
+     */
+    PacketTemplate(PacketType type, boolean writeDefaults) {
+        this.prototype = new PacketContainer(type);
+        if (writeDefaults) prototype.getModifier().writeDefaults();
+    }
+
+    /**
+     * Resolves an accessor against the prototype, to be bound to each new packet with {@link StructureModifier#withTarget(Object)}
+     * @param accessor The accessor, such as {@code PacketContainer::getIntegers}
+     * @return The resolved accessor
+     */
+    <T> StructureModifier<T> accessor(Function<PacketContainer, StructureModifier<T>> accessor) {
+        return accessor.apply(prototype);
+    }
+
+    /**
+     * @return A new packet holding the same values as the prototype
+     */
+    PacketContainer create() {
+        return prototype.shallowClone();
+    }
+}
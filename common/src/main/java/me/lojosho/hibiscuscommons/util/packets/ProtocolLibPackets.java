@@ -0,0 +1,164 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.reflect.StructureModifier;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.bukkit.entity.EntityType;
+
+import java.util.UUID;
+
+/**
+ * Builds packets through ProtocolLib. Used by {@link PacketManager} when a packet can't be created natively,
+ * and kept apart so ProtocolLib is only touched when it's actually needed.
+ * <p>
+ * Every packet type has a {@link PacketTemplate} and its field accessors resolved once, when this class is first used.
+ */
+final class ProtocolLibPackets {
+
+    private static final PacketTemplate SPAWN_ENTITY = new PacketTemplate(PacketType.Play.Server.SPAWN_ENTITY, true);
+    private static final StructureModifier<UUID> SPAWN_ENTITY_UUIDS = SPAWN_ENTITY.accessor(PacketContainer::getUUIDs);
+    private static final StructureModifier<Integer> SPAWN_ENTITY_INTEGERS = SPAWN_ENTITY.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<EntityType> SPAWN_ENTITY_TYPES = SPAWN_ENTITY.accessor(PacketContainer::getEntityTypeModifier);
+    private static final StructureModifier<Double> SPAWN_ENTITY_DOUBLES = SPAWN_ENTITY.accessor(PacketContainer::getDoubles);
+
+    private static final PacketTemplate GAME_STATE = new PacketTemplate(PacketType.Play.Server.GAME_STATE_CHANGE, false);
+    private static final StructureModifier<Integer> GAME_STATE_IDS = GAME_STATE.accessor(PacketContainer::getGameStateIDs);
+    private static final StructureModifier<Float> GAME_STATE_FLOATS = GAME_STATE.accessor(PacketContainer::getFloat);
+
+    private static final PacketTemplate MOUNT = new PacketTemplate(PacketType.Play.Server.MOUNT, false);
+    private static final StructureModifier<Integer> MOUNT_INTEGERS = MOUNT.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<int[]> MOUNT_INTEGER_ARRAYS = MOUNT.accessor(PacketContainer::getIntegerArrays);
+
+    private static final PacketTemplate HEAD_ROTATION = new PacketTemplate(PacketType.Play.Server.ENTITY_HEAD_ROTATION, false);
+    private static final StructureModifier<Integer> HEAD_ROTATION_INTEGERS = HEAD_ROTATION.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<Byte> HEAD_ROTATION_BYTES = HEAD_ROTATION.accessor(PacketContainer::getBytes);
+
+    private static final PacketTemplate ROTATION = new PacketTemplate(PacketType.Play.Server.ENTITY_LOOK, false);
+    private static final StructureModifier<Integer> ROTATION_INTEGERS = ROTATION.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<Byte> ROTATION_BYTES = ROTATION.accessor(PacketContainer::getBytes);
+    private static final StructureModifier<Boolean> ROTATION_BOOLEANS = ROTATION.accessor(PacketContainer::getBooleans);
+
+    private static final PacketTemplate RELATIVE_MOVE = new PacketTemplate(PacketType.Play.Server.REL_ENTITY_MOVE, false);
+    private static final StructureModifier<Integer> RELATIVE_MOVE_INTEGERS = RELATIVE_MOVE.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<Short> RELATIVE_MOVE_SHORTS = RELATIVE_MOVE.accessor(PacketContainer::getShorts);
+    private static final StructureModifier<Boolean> RELATIVE_MOVE_BOOLEANS = RELATIVE_MOVE.accessor(PacketContainer::getBooleans);
+
+    private static final PacketTemplate RELATIVE_MOVE_LOOK = new PacketTemplate(PacketType.Play.Server.REL_ENTITY_MOVE_LOOK, false);
+    private static final StructureModifier<Integer> RELATIVE_MOVE_LOOK_INTEGERS = RELATIVE_MOVE_LOOK.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<Short> RELATIVE_MOVE_LOOK_SHORTS = RELATIVE_MOVE_LOOK.accessor(PacketContainer::getShorts);
+    private static final StructureModifier<Byte> RELATIVE_MOVE_LOOK_BYTES = RELATIVE_MOVE_LOOK.accessor(PacketContainer::getBytes);
+    private static final StructureModifier<Boolean> RELATIVE_MOVE_LOOK_BOOLEANS = RELATIVE_MOVE_LOOK.accessor(PacketContainer::getBooleans);
+
+    private static final PacketTemplate DESTROY = new PacketTemplate(PacketType.Play.Server.ENTITY_DESTROY, false);
+    private static final StructureModifier<Object> DESTROY_FIELDS = DESTROY.accessor(PacketContainer::getModifier);
+
+    private static final PacketTemplate CAMERA = new PacketTemplate(PacketType.Play.Server.CAMERA, false);
+    private static final StructureModifier<Integer> CAMERA_INTEGERS = CAMERA.accessor(PacketContainer::getIntegers);
+
+    private static final PacketTemplate LEASH = new PacketTemplate(PacketType.Play.Server.ATTACH_ENTITY, false);
+    private static final StructureModifier<Integer> LEASH_INTEGERS = LEASH.accessor(PacketContainer::getIntegers);
+
+    private static final PacketTemplate TELEPORT = new PacketTemplate(PacketType.Play.Server.ENTITY_TELEPORT, false);
+    private static final StructureModifier<Integer> TELEPORT_INTEGERS = TELEPORT.accessor(PacketContainer::getIntegers);
+    private static final StructureModifier<Double> TELEPORT_DOUBLES = TELEPORT.accessor(PacketContainer::getDoubles);
+    private static final StructureModifier<Byte> TELEPORT_BYTES = TELEPORT.accessor(PacketContainer::getBytes);
+    private static final StructureModifier<Boolean> TELEPORT_BOOLEANS = TELEPORT.accessor(PacketContainer::getBooleans);
+
+    private ProtocolLibPackets() {
+    }
+
+    static PacketContainer spawnEntity(int entityId, UUID uuid, EntityType entityType, double x, double y, double z) {
+        PacketContainer packet = SPAWN_ENTITY.create();
+        Object handle = packet.getHandle();
+        SPAWN_ENTITY_UUIDS.withTarget(handle).write(0, uuid);
+        SPAWN_ENTITY_INTEGERS.withTarget(handle).write(0, entityId);
+        SPAWN_ENTITY_TYPES.withTarget(handle).write(0, entityType);
+        SPAWN_ENTITY_DOUBLES.withTarget(handle).
+                write(0, x).
+                write(1, y).
+                write(2, z);
+        return packet;
+    }
+
+    static PacketContainer gamemodeChange(int gamemode) {
+        PacketContainer packet = GAME_STATE.create();
+        Object handle = packet.getHandle();
+        // Tells what event this is. This is a change gamemode event.
+        GAME_STATE_IDS.withTarget(handle).write(0, 3);
+        GAME_STATE_FLOATS.withTarget(handle).write(0, (float) gamemode);
+        return packet;
+    }
+
+    static PacketContainer mount(int mountId, int[] passengerIds) {
+        PacketContainer packet = MOUNT.create();
+        Object handle = packet.getHandle();
+        MOUNT_INTEGERS.withTarget(handle).write(0, mountId);
+        MOUNT_INTEGER_ARRAYS.withTarget(handle).write(0, passengerIds);
+        return packet;
+    }
+
+    static PacketContainer headRotation(int entityId, byte yaw) {
+        PacketContainer packet = HEAD_ROTATION.create();
+        Object handle = packet.getHandle();
+        HEAD_ROTATION_INTEGERS.withTarget(handle).write(0, entityId);
+        HEAD_ROTATION_BYTES.withTarget(handle).write(0, yaw);
+        return packet;
+    }
+
+    static PacketContainer rotation(int entityId, byte yaw, byte pitch, boolean onGround) {
+        PacketContainer packet = ROTATION.create();
+        Object handle = packet.getHandle();
+        ROTATION_INTEGERS.withTarget(handle).write(0, entityId);
+        ROTATION_BYTES.withTarget(handle).write(0, yaw).write(1, pitch);
+        ROTATION_BOOLEANS.withTarget(handle).write(0, onGround);
+        return packet;
+    }
+
+    static PacketContainer relativeMove(int entityId, short deltaX, short deltaY, short deltaZ, boolean onGround) {
+        PacketContainer packet = RELATIVE_MOVE.create();
+        Object handle = packet.getHandle();
+        RELATIVE_MOVE_INTEGERS.withTarget(handle).write(0, entityId);
+        RELATIVE_MOVE_SHORTS.withTarget(handle).write(0, deltaX).write(1, deltaY).write(2, deltaZ);
+        RELATIVE_MOVE_BOOLEANS.withTarget(handle).write(0, onGround);
+        return packet;
+    }
+
+    static PacketContainer relativeMoveLook(int entityId, short deltaX, short deltaY, short deltaZ, byte yaw, byte pitch, boolean onGround) {
+        PacketContainer packet = RELATIVE_MOVE_LOOK.create();
+        Object handle = packet.getHandle();
+        RELATIVE_MOVE_LOOK_INTEGERS.withTarget(handle).write(0, entityId);
+        RELATIVE_MOVE_LOOK_SHORTS.withTarget(handle).write(0, deltaX).write(1, deltaY).write(2, deltaZ);
+        RELATIVE_MOVE_LOOK_BYTES.withTarget(handle).write(0, yaw).write(1, pitch);
+        RELATIVE_MOVE_LOOK_BOOLEANS.withTarget(handle).write(0, onGround);
+        return packet;
+    }
+
+    static PacketContainer destroy(int[] entityIds) {
+        PacketContainer packet = DESTROY.create();
+        DESTROY_FIELDS.withTarget(packet.getHandle()).write(0, new IntArrayList(entityIds));
+        return packet;
+    }
+
+    static PacketContainer camera(int entityId) {
+        PacketContainer packet = CAMERA.create();
+        CAMERA_INTEGERS.withTarget(packet.getHandle()).write(0, entityId);
+        return packet;
+    }
+
+    static PacketContainer leash(int leashedEntity, int entityId) {
+        PacketContainer packet = LEASH.create();
+        LEASH_INTEGERS.withTarget(packet.getHandle()).write(0, leashedEntity).write(1, entityId);
+        return packet;
+    }
+
+    static PacketContainer teleport(int entityId, double x, double y, double z, byte yaw, byte pitch, boolean onGround) {
+        PacketContainer packet = TELEPORT.create();
+        Object handle = packet.getHandle();
+        TELEPORT_INTEGERS.withTarget(handle).write(0, entityId);
+        TELEPORT_DOUBLES.withTarget(handle).write(0, x).write(1, y).write(2, z);
+        TELEPORT_BYTES.withTarget(handle).write(0, yaw).write(1, pitch);
+        TELEPORT_BOOLEANS.withTarget(handle).write(0, onGround);
+        return packet;
+    }
+}
@@ -0,0 +1,67 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A reusable audience for {@link PacketManager} calls. Keep one around for something that is resent every tick and
+ * {@link #update(Location, int) update} it instead of asking for a new viewer list each time.
+ */
+public class ViewerSet extends AbstractCollection<Player> {
+
+    private final ArrayList<Player> viewers = new ArrayList<>();
+
+    /**
+     * Replaces the viewers with the players that can view a location
+     * @param location The location being viewed
+     * @param distance How far away players can be, 0 or less for the whole world
+     * @return This viewer set
+     */
+    public ViewerSet update(@NotNull Location location, int distance) {
+        return update(location, distance, false);
+    }
+
+    /**
+     * Replaces the viewers with the players that can view a location
+     * @param location The location being viewed
+     * @param distance How far away players can be, 0 or less for the whole world
+     * @param spherical true to check the real distance, false to check a cube around the location
+     * @return This viewer set
+     */
+    public ViewerSet update(@NotNull Location location, int distance, boolean spherical) {
+        viewers.clear();
+        PacketManager.getViewers(location, distance, spherical, viewers);
+        return this;
+    }
+
+    @Override
+    public boolean add(Player player) {
+        return viewers.add(player);
+    }
+
+    @Override
+    public boolean remove(Object player) {
+        return viewers.remove(player);
+    }
+
+    @Override
+    public void clear() {
+        viewers.clear();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Player> iterator() {
+        return viewers.iterator();
+    }
+
+    @Override
+    public int size() {
+        return viewers.size();
+    }
+}
@@ -0,0 +1,121 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import lombok.Getter;
+import me.lojosho.hibiscuscommons.util.EntityIdAllocator;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A packet only entity whose viewers are managed by {@link VirtualEntityTracker}. It is spawned for players as they
+ * come within its tracking range and destroyed for them as they leave it.
+ * <p>
+ * Extend it and override {@link #onShow(Collection)} to send anything else the entity needs, such as equipment.
+ */
+public class VirtualEntity {
+
+    @Getter
+    private final int entityId;
+    @Getter
+    private final UUID uuid;
+    @Getter
+    private final EntityType entityType;
+    private Location location;
+    @Getter
+    private int trackingRange;
+    final Set<Player> viewers = new HashSet<>();
+    boolean registered = false;
+    // Ids this entity allocated itself are released when it's removed
+    private boolean allocatedId = false;
+
+    public VirtualEntity(@NotNull EntityType entityType, @NotNull Location location, int trackingRange) {
+        this(EntityIdAllocator.allocate(), UUID.randomUUID(), entityType, location, trackingRange);
+        this.allocatedId = true;
+        EntityIdAllocator.setOwner(entityId, this);
+    }
+
+    public VirtualEntity(int entityId, @NotNull UUID uuid, @NotNull EntityType entityType, @NotNull Location location, int trackingRange) {
+        this.entityId = entityId;
+        this.uuid = uuid;
+        this.entityType = entityType;
+        this.location = location.clone();
+        this.trackingRange = trackingRange;
+    }
+
+    /**
+     * @return A copy of where the entity is
+     */
+    @NotNull
+    public Location getLocation() {
+        return location.clone();
+    }
+
+    /**
+     * @return The players the entity is currently spawned for
+     */
+    @NotNull
+    public Set<Player> getViewers() {
+        return Collections.unmodifiableSet(viewers);
+    }
+
+    /**
+     * Moves the entity for its viewers. Moving to another world respawns it for the players there on the next scan.
+     * @param location Where the entity is now
+     */
+    public void teleport(@NotNull Location location) {
+        boolean changedWorld = this.location.getWorld() != location.getWorld();
+        this.location = location.clone();
+        if (changedWorld) {
+            hide(viewers);
+            viewers.clear();
+        } else if (!viewers.isEmpty()) {
+            PacketManager.sendMovePacket(entityId, this.location, false, viewers);
+        }
+        if (registered) VirtualEntityTracker.scan(this);
+    }
+
+    /**
+     * Changes how far away players can be and still see the entity
+     * @param trackingRange The range in blocks
+     */
+    public void setTrackingRange(int trackingRange) {
+        this.trackingRange = trackingRange;
+        if (registered) VirtualEntityTracker.scan(this);
+    }
+
+    /**
+     * Stops tracking the entity and destroys it for everyone viewing it. The entity shouldn't be registered again afterwards.
+     */
+    public void remove() {
+        VirtualEntityTracker.unregister(this);
+        InteractionRouter.unregister(entityId);
+        if (allocatedId) {
+            allocatedId = false;
+            EntityIdAllocator.release(entityId);
+        }
+    }
+
+    void show(Collection<Player> players) {
+        PacketManager.sendEntitySpawnPacket(location, entityId, entityType, uuid, players);
+        onShow(players);
+    }
+
+    void hide(Collection<Player> players) {
+        if (players.isEmpty()) return;
+        PacketManager.sendEntityDestroyPacket(entityId, players);
+    }
+
+    /**
+     * Called after the entity was spawned for some players
+     * @param players The players that can now see the entity
+     */
+    protected void onShow(@NotNull Collection<Player> players) {
+    }
+}
@@ -0,0 +1,194 @@
+package me.lojosho.hibiscuscommons.util.packets;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import me.lojosho.hibiscuscommons.util.PlayerIndex;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of who can see each {@link VirtualEntity} and sends spawn and destroy packets only to the players who
+ * came into or left its range.
+ * <p>
+ * Entities are rescanned a slice at a time, so every entity is looked at once every {@link #getScanInterval() scan interval}
+ * ticks rather than all of them every tick. Players that join, respawn, change world or teleport are checked against
+ * every entity on the next tick, as their client forgets or may no longer be near what it was shown.
+ * <p>
+ * Only used from the main thread.
+ */
+public class VirtualEntityTracker implements Listener {
+
+    private static final Int2ObjectOpenHashMap<VirtualEntity> ENTITIES = new Int2ObjectOpenHashMap<>();
+    private static final List<VirtualEntity> SCAN_ORDER = new ArrayList<>();
+    private static final Set<Player> PENDING_PLAYERS = new LinkedHashSet<>();
+    // Reused between scans, only the main thread scans
+    private static final Set<Player> IN_RANGE = new HashSet<>();
+    private static final List<Player> CHANGED = new ArrayList<>();
+    private static int cursor = 0;
+    private static boolean setup = false;
+
+    /**
+     * How many ticks it takes to rescan every entity
+     */
+    @Getter @Setter
+    private static int scanInterval = 10;
+
+    /**
+     * Registers the listeners and starts scanning
+     */
+    public static void setup() {
+        if (setup) return;
+        setup = true;
+        Bukkit.getPluginManager().registerEvents(new VirtualEntityTracker(), HibiscusCommonsPlugin.getInstance());
+        Bukkit.getScheduler().runTaskTimer(HibiscusCommonsPlugin.getInstance(), VirtualEntityTracker::tick, 1L, 1L);
+    }
+
+    /**
+     * Starts tracking an entity, spawning it for the players already in range
+     * @param entity The entity
+     */
+    public static void register(@NotNull VirtualEntity entity) {
+        if (entity.registered) return;
+        VirtualEntity previous = ENTITIES.put(entity.getEntityId(), entity);
+        if (previous != null) unregister(previous);
+        SCAN_ORDER.add(entity);
+        entity.registered = true;
+        scan(entity);
+    }
+
+    /**
+     * Stops tracking an entity and destroys it for its viewers
+     * @param entity The entity
+     */
+    public static void unregister(@NotNull VirtualEntity entity) {
+        if (!entity.registered) return;
+        entity.registered = false;
+        if (ENTITIES.get(entity.getEntityId()) == entity) ENTITIES.remove(entity.getEntityId());
+        int index = SCAN_ORDER.indexOf(entity);
+        if (index != -1) {
+            SCAN_ORDER.remove(index);
+            if (index < cursor) cursor--;
+        }
+        entity.hide(entity.viewers);
+        entity.viewers.clear();
+        EntityMovement.forget(entity.getEntityId());
+    }
+
+    /**
+     * Gets a tracked entity
+     * @param entityId The entity's id
+     * @return The entity, or null if no entity with that id is tracked
+     */
+    @Nullable
+    public static VirtualEntity getEntity(int entityId) {
+        return ENTITIES.get(entityId);
+    }
+
+    private static void tick() {
+        if (!PENDING_PLAYERS.isEmpty()) {
+            for (Player player : PENDING_PLAYERS) {
+                if (player.isOnline()) scan(player);
+            }
+            PENDING_PLAYERS.clear();
+        }
+
+        int size = SCAN_ORDER.size();
+        if (size == 0) return;
+        int slice = Math.max(1, (size + scanInterval - 1) / Math.max(1, scanInterval));
+        for (int i = 0; i < slice && i < size; i++) {
+            if (cursor >= SCAN_ORDER.size()) cursor = 0;
+            scan(SCAN_ORDER.get(cursor++));
+        }
+    }
+
+    /**
+     * Spawns the entity for players that came into range and destroys it for players that left
+     */
+    static void scan(VirtualEntity entity) {
+        Location location = entity.getLocation();
+        IN_RANGE.clear();
+        PlayerIndex.getPlayersInRadius(location, entity.getTrackingRange(), IN_RANGE);
+
+        CHANGED.clear();
+        Iterator<Player> iterator = entity.viewers.iterator();
+        while (iterator.hasNext()) {
+            Player player = iterator.next();
+            if (IN_RANGE.contains(player)) continue;
+            iterator.remove();
+            CHANGED.add(player);
+        }
+        entity.hide(CHANGED);
+
+        CHANGED.clear();
+        for (Player player : IN_RANGE) {
+            if (entity.viewers.add(player)) CHANGED.add(player);
+        }
+        if (!CHANGED.isEmpty()) entity.show(new ArrayList<>(CHANGED));
+        CHANGED.clear();
+    }
+
+    // Checks a single player against every entity
+    private static void scan(Player player) {
+        Location location = player.getLocation();
+        List<Player> audience = List.of(player);
+        for (VirtualEntity entity : SCAN_ORDER) {
+            Location entityLocation = entity.getLocation();
+            boolean inRange = entityLocation.getWorld() == location.getWorld()
+                    && entityLocation.distanceSquared(location) <= (double) entity.getTrackingRange() * entity.getTrackingRange();
+            if (inRange) {
+                if (entity.viewers.add(player)) entity.show(audience);
+            } else if (entity.viewers.remove(player)) {
+                entity.hide(audience);
+            }
+        }
+    }
+
+    // The client drops every entity on respawn and world change, so nothing needs destroying
+    private static void forget(Player player) {
+        for (VirtualEntity entity : SCAN_ORDER) entity.viewers.remove(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        PENDING_PLAYERS.add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        forget(event.getPlayer());
+        PENDING_PLAYERS.remove(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        PENDING_PLAYERS.add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangeWorld(PlayerChangedWorldEvent event) {
+        forget(event.getPlayer());
+        PENDING_PLAYERS.add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        forget(event.getPlayer());
+        PENDING_PLAYERS.add(event.getPlayer());
+    }
+}
@@ -13,5 +13,6 @@ include(
     "v1_20_R2",
     "v1_20_R3",
     "v1_20_R4",
-    "v1_21_R1"
+    "v1_21_R1",
+    "benchmarks"
 )
\ No newline at end of file
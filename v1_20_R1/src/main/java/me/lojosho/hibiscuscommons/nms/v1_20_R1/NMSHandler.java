@@ -1,39 +1,113 @@
 package me.lojosho.hibiscuscommons.nms.v1_20_R1;
 
 import com.mojang.datafixers.util.Pair;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import me.lojosho.hibiscuscommons.HibiscusCommonsPlugin;
+import me.lojosho.hibiscuscommons.util.ItemConversionCache;
+import me.lojosho.hibiscuscommons.util.packets.HiddenNameTeams;
+import me.lojosho.hibiscuscommons.util.packets.PacketKind;
+import me.lojosho.hibiscuscommons.util.packets.PacketManager;
+import net.minecraft.core.NonNullList;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundAddEntityPacket;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
+import net.minecraft.network.protocol.game.ClientboundContainerSetContentPacket;
 import net.minecraft.network.protocol.game.ClientboundContainerSetSlotPacket;
+import net.minecraft.network.protocol.game.ClientboundMoveEntityPacket;
+import net.minecraft.network.protocol.game.ClientboundRemoveEntitiesPacket;
+import net.minecraft.network.protocol.game.ClientboundRotateHeadPacket;
+import net.minecraft.network.protocol.game.ClientboundSetCameraPacket;
+import net.minecraft.network.protocol.game.ClientboundSetEntityLinkPacket;
 import net.minecraft.network.protocol.game.ClientboundSetEquipmentPacket;
+import net.minecraft.network.protocol.game.ClientboundSetPassengersPacket;
 import net.minecraft.network.protocol.game.ClientboundSetPlayerTeamPacket;
+import net.minecraft.network.protocol.game.ClientboundTeleportEntityPacket;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.network.ServerPlayerConnection;
 import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.inventory.InventoryMenu;
+import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.scores.PlayerTeam;
+import net.minecraft.world.scores.Scoreboard;
 import net.minecraft.world.scores.Team;
 import org.bukkit.Bukkit;
 import org.bukkit.craftbukkit.v1_20_R1.CraftEquipmentSlot;
 import org.bukkit.craftbukkit.v1_20_R1.CraftServer;
+import org.bukkit.craftbukkit.v1_20_R1.CraftWorld;
 import org.bukkit.craftbukkit.v1_20_R1.entity.CraftPlayer;
 import org.bukkit.craftbukkit.v1_20_R1.inventory.CraftItemStack;
-import org.bukkit.craftbukkit.v1_20_R1.scoreboard.CraftScoreboard;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
 
+    // The client rejects bundles holding more packets than this
+    private static final int MAX_BUNDLE_SIZE = 4096;
+    // Each packet gets its own copy of the converted item, which costs far less than converting it again
+    private static final ItemConversionCache<net.minecraft.world.item.ItemStack> EQUIPMENT_ITEMS = new ItemConversionCache<>(1024, CraftItemStack::asNMSCopy, net.minecraft.world.item.ItemStack::copy);
+    private static final Scoreboard PACKET_SCOREBOARD = new Scoreboard();
+    private static final AtomicInteger ENTITY_COUNTER = findEntityCounter();
+    // Filled when the class loads and only read after, so packets can be built on any thread
+    private static final EnumMap<org.bukkit.entity.EntityType, net.minecraft.world.entity.EntityType<?>> ENTITY_TYPES = createEntityTypes();
 
     @Override
     public int getNextEntityId() {
         return net.minecraft.world.entity.Entity.nextEntityId();
     }
 
+    @Override
+    public int reserveEntityIds(int count) {
+        if (ENTITY_COUNTER == null) return -1;
+        // nextEntityId() increments before returning, so the block starts after the current value
+        return ENTITY_COUNTER.getAndAdd(count) + 1;
+    }
+
+    // The field keeps its Mojang name on Mojang mapped servers, on the rest it's the one nextEntityId() increments
+    private static AtomicInteger findEntityCounter() {
+        try {
+            Field field = net.minecraft.world.entity.Entity.class.getDeclaredField("ENTITY_COUNTER");
+            field.setAccessible(true);
+            if (field.get(null) instanceof AtomicInteger counter) return counter;
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+        try {
+            List<AtomicInteger> candidates = new ArrayList<>();
+            for (Field field : net.minecraft.world.entity.Entity.class.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != AtomicInteger.class) continue;
+                field.setAccessible(true);
+                candidates.add((AtomicInteger) field.get(null));
+            }
+            // Uses up one entity id
+            int id = net.minecraft.world.entity.Entity.nextEntityId();
+            for (AtomicInteger candidate : candidates) {
+                if (candidate.get() == id) return candidate;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            HibiscusCommonsPlugin.getInstance().getLogger().log(Level.WARNING, "Unable to find the entity id counter, entity ids can't be reserved", e);
+            return null;
+        }
+        HibiscusCommonsPlugin.getInstance().getLogger().warning("Unable to find the entity id counter, entity ids can't be reserved");
+        return null;
+    }
+
     @Override
     public org.bukkit.entity.Entity getEntity(int entityId) {
         net.minecraft.world.entity.Entity entity = getNMSEntity(entityId);
@@ -41,6 +115,30 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
         return entity.getBukkitEntity();
     }
 
+    @Override
+    public org.bukkit.entity.Entity getEntity(org.bukkit.World world, int entityId) {
+        net.minecraft.world.entity.Entity entity = ((CraftWorld) world).getHandle().getEntity(entityId);
+        if (entity == null) return null;
+        return entity.getBukkitEntity();
+    }
+
+    @Override
+    public org.bukkit.entity.Entity[] getEntities(int... entityIds) {
+        org.bukkit.entity.Entity[] entities = new org.bukkit.entity.Entity[entityIds.length];
+        int remaining = entityIds.length;
+        for (ServerLevel world : ((CraftServer) Bukkit.getServer()).getHandle().getServer().getAllLevels()) {
+            for (int i = 0; i < entityIds.length; i++) {
+                if (entities[i] != null) continue;
+                net.minecraft.world.entity.Entity entity = world.getEntity(entityIds[i]);
+                if (entity == null) continue;
+                entities[i] = entity.getBukkitEntity();
+                remaining--;
+            }
+            if (remaining == 0) break;
+        }
+        return entities;
+    }
+
     private net.minecraft.world.entity.Entity getNMSEntity(int entityId) {
         for (ServerLevel world : ((CraftServer) Bukkit.getServer()).getHandle().getServer().getAllLevels()) {
             net.minecraft.world.entity.Entity entity = world.getEntity(entityId);
@@ -55,7 +153,7 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
             int entityId,
             org.bukkit.inventory.EquipmentSlot slot,
             ItemStack item,
-            List<Player> sendTo
+            Collection<? extends Player> sendTo
     ) {
 
         EquipmentSlot nmsSlot = null;
@@ -63,7 +161,7 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
 
         // Converting EquipmentSlot and ItemStack to NMS ones.
         nmsSlot = CraftEquipmentSlot.getNMS(slot);
-        nmsItem = CraftItemStack.asNMSCopy(item);
+        nmsItem = EQUIPMENT_ITEMS.get(item);
 
         if (nmsSlot == null) return;
 
@@ -72,28 +170,28 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
         List<Pair<EquipmentSlot, net.minecraft.world.item.ItemStack>> pairs = Collections.singletonList(pair);
 
         ClientboundSetEquipmentPacket packet = new ClientboundSetEquipmentPacket(entityId, pairs);
-        for (Player p : sendTo) sendPacket(p, packet);
+        sendEquipmentPacket(sendTo, packet, entityId);
     }
 
     @Override
     public void equipmentSlotUpdate(
             int entityId,
             HashMap<org.bukkit.inventory.EquipmentSlot, ItemStack> equipment,
-            List<Player> sendTo
+            Collection<? extends Player> sendTo
     ) {
 
         List<Pair<EquipmentSlot, net.minecraft.world.item.ItemStack>> pairs = new ArrayList<>();
 
         for (org.bukkit.inventory.EquipmentSlot slot : equipment.keySet()) {
             EquipmentSlot nmsSlot = CraftEquipmentSlot.getNMS(slot);
-            net.minecraft.world.item.ItemStack nmsItem = CraftItemStack.asNMSCopy(equipment.get(slot));
+            net.minecraft.world.item.ItemStack nmsItem = EQUIPMENT_ITEMS.get(equipment.get(slot));
 
             Pair<EquipmentSlot, net.minecraft.world.item.ItemStack> pair = new Pair<>(nmsSlot, nmsItem);
             pairs.add(pair);
         }
 
         ClientboundSetEquipmentPacket packet = new ClientboundSetEquipmentPacket(entityId, pairs);
-        for (Player p : sendTo) sendPacket(p, packet);
+        sendEquipmentPacket(sendTo, packet, entityId);
     }
 
 
@@ -102,42 +200,74 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
             Player player,
             int slot
     ) {
-        int index = 0;
+        ItemStack item = player.getInventory().getItem(slot);
+        sendPacket(player, createSlotPacket(player, slot, item));
+    }
 
-        ServerPlayer player1 = ((CraftPlayer) player).getHandle();
+    @Override
+    public Object createSlotPacket(Player player, int slot, ItemStack item) {
+        int menuSlot = toMenuSlot(slot);
+        // -1 would be taken as the cursor
+        if (menuSlot == -1) throw new IllegalArgumentException("Slot " + slot + " isn't part of the player's inventory");
+        InventoryMenu menu = ((CraftPlayer) player).getHandle().inventoryMenu;
+        return new ClientboundContainerSetSlotPacket(menu.containerId, menu.incrementStateId(), menuSlot, EQUIPMENT_ITEMS.get(item));
+    }
 
-        if (index < Inventory.getSelectionSize()) {
-            index += 36;
-        } else if (index > 39) {
-            index += 5; // Off hand
-        } else if (index > 35) {
-            index = 8 - (index - 36);
+    @Override
+    public Object createInventoryContentPacket(Player player, Map<Integer, ItemStack> items) {
+        InventoryMenu menu = ((CraftPlayer) player).getHandle().inventoryMenu;
+        // The packet copies every item, so the menu's own items can go in as they are
+        NonNullList<net.minecraft.world.item.ItemStack> contents = menu.getItems();
+        for (Map.Entry<Integer, ItemStack> entry : items.entrySet()) {
+            int menuSlot = toMenuSlot(entry.getKey());
+            if (menuSlot < 0 || menuSlot >= contents.size()) continue;
+            contents.set(menuSlot, EQUIPMENT_ITEMS.get(entry.getValue()));
         }
-        ItemStack item = player.getInventory().getItem(slot);
+        return new ClientboundContainerSetContentPacket(menu.containerId, menu.incrementStateId(), contents, menu.getCarried());
+    }
 
-        Packet packet = new ClientboundContainerSetSlotPacket(player1.inventoryMenu.containerId, player1.inventoryMenu.incrementStateId(), index, CraftItemStack.asNMSCopy(item));
-        sendPacket(player, packet);
+    // Bukkit numbers the hotbar first and the armor last, the inventory menu starts with crafting and armor
+    private static int toMenuSlot(int slot) {
+        if (slot < 0) return -1;
+        if (slot < Inventory.getSelectionSize()) return slot + 36;
+        if (slot < 36) return slot;
+        if (slot < 40) return 8 - (slot - 36); // Armor, boots first
+        if (slot == 40) return 45; // Off hand
+        return -1;
     }
 
     @Override
     public void hideNPCName(Player player, String NPCName) {
-        //Creating the team
-        PlayerTeam team = new PlayerTeam(((CraftScoreboard) Bukkit.getScoreboardManager().getMainScoreboard()).getHandle(), NPCName);
+        HiddenNameTeams.hide(player, NPCName);
+    }
+
+    @Override
+    public void hideNPCNames(Player player, Collection<String> NPCNames) {
+        HiddenNameTeams.hide(player, NPCNames);
+    }
+
+    @Override
+    public Object createRemoveTeamPacket(String teamName) {
+        return ClientboundSetPlayerTeamPacket.createRemovePacket(createTeam(teamName));
+    }
 
-        //Setting name visibility
+    @Override
+    public Object createHiddenNameTeamPacket(String teamName, Collection<String> members) {
+        PlayerTeam team = createTeam(teamName);
         team.setNameTagVisibility(Team.Visibility.NEVER);
+        team.getPlayers().addAll(members);
+        return ClientboundSetPlayerTeamPacket.createAddOrModifyPacket(team, true);
+    }
 
-        //Remove the Team (i assume so if it exists)
-        ClientboundSetPlayerTeamPacket removeTeamPacket = ClientboundSetPlayerTeamPacket.createRemovePacket(team);
-        sendPacket(player, removeTeamPacket);
-        //Creating the Team
-        ClientboundSetPlayerTeamPacket createTeamPacket = ClientboundSetPlayerTeamPacket.createAddOrModifyPacket(team, true);
-        sendPacket(player, createTeamPacket);
-        //Adding players to the team (You have to use the NPC's name, and add it to a list)
-        ClientboundSetPlayerTeamPacket createPlayerTeamPacket = ClientboundSetPlayerTeamPacket.createMultiplePlayerPacket(team, new ArrayList<String>() {{
-            add(NPCName);
-        }}, ClientboundSetPlayerTeamPacket.Action.ADD);
-        sendPacket(player, createPlayerTeamPacket);
+    @Override
+    public Object createTeamMembersPacket(String teamName, Collection<String> members, boolean add) {
+        return ClientboundSetPlayerTeamPacket.createMultiplePlayerPacket(createTeam(teamName), members,
+                add ? ClientboundSetPlayerTeamPacket.Action.ADD : ClientboundSetPlayerTeamPacket.Action.REMOVE);
+    }
+
+    // Teams are only used to build packets, so they belong to a scoreboard nothing else sees
+    private PlayerTeam createTeam(String teamName) {
+        return new PlayerTeam(PACKET_SCOREBOARD, teamName);
     }
 
     public void sendPacket(Player player, Packet packet) {
@@ -146,6 +276,151 @@ public class NMSHandler implements me.lojosho.hibiscuscommons.nms.NMSHandler {
         connection.send(packet);
     }
 
+    @Override
+    public void sendPacket(Player player, Object packet) {
+        sendPacket(player, (Packet) packet);
+    }
+
+    private void sendEquipmentPacket(Collection<? extends Player> sendTo, Packet packet, int entityId) {
+        PacketManager.sendNMSPacket(sendTo, packet, PacketKind.EQUIPMENT, entityId);
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void sendBundledPackets(Player player, List<Object> packets) {
+        if (packets.isEmpty()) return;
+        if (packets.size() == 1) {
+            sendPacket(player, packets.get(0));
+            return;
+        }
+        List<Packet> bundled = new ArrayList<>(packets.size());
+        for (Object packet : packets) {
+            // Bundles can't be nested, so anything that is already bundled is unpacked into ours
+            if (packet instanceof ClientboundBundlePacket bundlePacket) {
+                for (Packet subPacket : bundlePacket.subPackets()) bundled.add(subPacket);
+            } else {
+                bundled.add((Packet) packet);
+            }
+        }
+        for (int i = 0; i < bundled.size(); i += MAX_BUNDLE_SIZE) {
+            List<Packet> bundle = bundled.subList(i, Math.min(i + MAX_BUNDLE_SIZE, bundled.size()));
+            sendPacket(player, new ClientboundBundlePacket((Iterable) bundle));
+        }
+    }
+
+    @Override
+    public void sendEncodedPacket(byte[] packet, Collection<? extends Player> sendTo) {
+        ByteBuf buffer = Unpooled.wrappedBuffer(packet);
+        try {
+            for (Player p : sendTo) {
+                if (p == null) continue;
+                Channel channel = ((CraftPlayer) p).getHandle().connection.connection.channel;
+                // Each write gets its own reader index over the same bytes, released by netty once flushed
+                channel.writeAndFlush(buffer.retainedDuplicate());
+            }
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public boolean isWritable(Player player) {
+        Channel channel = ((CraftPlayer) player).getHandle().connection.connection.channel;
+        return channel == null || channel.isWritable();
+    }
+
+    @Override
+    public void runOnEventLoop(Player player, Runnable task) {
+        Channel channel = ((CraftPlayer) player).getHandle().connection.connection.channel;
+        if (channel == null || !channel.isOpen()) return;
+        if (channel.eventLoop().inEventLoop()) task.run();
+        else channel.eventLoop().execute(task);
+    }
+
+    @Override
+    public Object createSpawnEntityPacket(int entityId, UUID uuid, org.bukkit.entity.EntityType entityType, double x, double y, double z) {
+        net.minecraft.world.entity.EntityType<?> type = getNMSEntityType(entityType);
+        if (type == null) return null;
+        return new ClientboundAddEntityPacket(entityId, uuid, x, y, z, 0, 0, type, 0, Vec3.ZERO, 0);
+    }
+
+    private net.minecraft.world.entity.EntityType<?> getNMSEntityType(org.bukkit.entity.EntityType entityType) {
+        return ENTITY_TYPES.get(entityType);
+    }
+
+    private static EnumMap<org.bukkit.entity.EntityType, net.minecraft.world.entity.EntityType<?>> createEntityTypes() {
+        EnumMap<org.bukkit.entity.EntityType, net.minecraft.world.entity.EntityType<?>> types = new EnumMap<>(org.bukkit.entity.EntityType.class);
+        for (org.bukkit.entity.EntityType entityType : org.bukkit.entity.EntityType.values()) {
+            if (entityType == org.bukkit.entity.EntityType.UNKNOWN) continue;
+            net.minecraft.world.entity.EntityType.byString(entityType.getKey().toString()).ifPresent(type -> types.put(entityType, type));
+        }
+        return types;
+    }
+
+    @Override
+    public Object createMountPacket(int mountId, int[] passengerIds) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        buffer.writeVarInt(mountId);
+        buffer.writeVarIntArray(passengerIds);
+        return new ClientboundSetPassengersPacket(buffer);
+    }
+
+    @Override
+    public Object createHeadRotationPacket(int entityId, byte yaw) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        buffer.writeVarInt(entityId);
+        buffer.writeByte(yaw);
+        return new ClientboundRotateHeadPacket(buffer);
+    }
+
+    @Override
+    public Object createRotationPacket(int entityId, byte yaw, byte pitch, boolean onGround) {
+        return new ClientboundMoveEntityPacket.Rot(entityId, yaw, pitch, onGround);
+    }
+
+    @Override
+    public Object createTeleportPacket(int entityId, double x, double y, double z, byte yaw, byte pitch, boolean onGround) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        buffer.writeVarInt(entityId);
+        buffer.writeDouble(x);
+        buffer.writeDouble(y);
+        buffer.writeDouble(z);
+        buffer.writeByte(yaw);
+        buffer.writeByte(pitch);
+        buffer.writeBoolean(onGround);
+        return new ClientboundTeleportEntityPacket(buffer);
+    }
+
+    @Override
+    public Object createRelativeMovePacket(int entityId, short deltaX, short deltaY, short deltaZ, boolean onGround) {
+        return new ClientboundMoveEntityPacket.Pos(entityId, deltaX, deltaY, deltaZ, onGround);
+    }
+
+    @Override
+    public Object createRelativeMoveLookPacket(int entityId, short deltaX, short deltaY, short deltaZ, byte yaw, byte pitch, boolean onGround) {
+        return new ClientboundMoveEntityPacket.PosRot(entityId, deltaX, deltaY, deltaZ, yaw, pitch, onGround);
+    }
+
+    @Override
+    public Object createDestroyPacket(int... entityIds) {
+        return new ClientboundRemoveEntitiesPacket(entityIds);
+    }
+
+    @Override
+    public Object createCameraPacket(int entityId) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        buffer.writeVarInt(entityId);
+        return new ClientboundSetCameraPacket(buffer);
+    }
+
+    @Override
+    public Object createLeashPacket(int leashedEntity, int holderEntity) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        buffer.writeInt(leashedEntity);
+        buffer.writeInt(holderEntity);
+        return new ClientboundSetEntityLinkPacket(buffer);
+    }
+
     @Override
     public boolean getSupported() {
         return true;